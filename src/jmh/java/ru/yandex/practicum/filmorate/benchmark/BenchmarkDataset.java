@@ -0,0 +1,185 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Поднимает приложение без веб-слоя на отдельной in-memory БД H2, заранее заполненной синтетическими данными:
+ * users пользователей, films фильмов, в среднем likesPerFilm лайков на фильм и friendsPerUser друзей
+ * на пользователя. Дополнительно создается пользователь без лайков и друзей для бенчмарков записи.
+ * Данные заливаются до старта приложения, потому что индексы в памяти загружаются из БД при старте.
+ */
+public final class BenchmarkDataset implements AutoCloseable {
+    private static final int BATCH_SIZE = 10_000;
+    private static final int GENRES = 6;
+    private static final int RATINGS = 5;
+
+    private final ConfigurableApplicationContext context;
+    private final int users;
+    private final int films;
+
+    private BenchmarkDataset(ConfigurableApplicationContext context, int users, int films) {
+        this.context = context;
+        this.users = users;
+        this.films = films;
+    }
+
+    public static BenchmarkDataset start(int users, int films, int likesPerFilm, int friendsPerUser,
+                                         boolean cacheEnabled, String... properties) {
+        return start(WebApplicationType.NONE, users, films, likesPerFilm, friendsPerUser, cacheEnabled, properties);
+    }
+
+    /**
+     * Поднимает приложение вместе с веб-сервером на случайном порту, см. {@link #port()}.
+     */
+    public static BenchmarkDataset startServer(int users, int films, int likesPerFilm, int friendsPerUser,
+                                               boolean cacheEnabled, String... properties) {
+        String[] serverProperties = Arrays.copyOf(properties, properties.length + 1);
+        serverProperties[properties.length] = "server.port=0";
+        return start(WebApplicationType.SERVLET, users, films, likesPerFilm, friendsPerUser, cacheEnabled,
+                serverProperties);
+    }
+
+    private static BenchmarkDataset start(WebApplicationType webApplicationType, int users, int films,
+                                          int likesPerFilm, int friendsPerUser, boolean cacheEnabled,
+                                          String... properties) {
+        String url = "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        seed(url, users, films, likesPerFilm, friendsPerUser);
+        // Параметры передаются как аргументы командной строки, чтобы перекрыть application.properties
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + url,
+                "--logging.level.root=WARN",
+                "--logging.level.org.zalando.logbook=WARN",
+                "--filmorate.cache.films.max-weight=" + (cacheEnabled ? 100_000 : 0),
+                "--filmorate.cache.users.max-weight=" + (cacheEnabled ? 100_000 : 0)));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(webApplicationType)
+                .run(args.toArray(new String[0]));
+        return new BenchmarkDataset(context, users, films);
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public int port() {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    public long randomUserId() {
+        return ThreadLocalRandom.current().nextLong(1, users + 1);
+    }
+
+    public int randomFilmId() {
+        return ThreadLocalRandom.current().nextInt(1, films + 1);
+    }
+
+    /**
+     * Пользователь без лайков и друзей, id которого следует за основным набором.
+     */
+    public long idleUserId() {
+        return users + 1L;
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    /**
+     * Создает схему скриптами приложения и заполняет БД; приложение при старте повторит скрипты без потери данных.
+     */
+    private static void seed(String url, int users, int films, int likesPerFilm, int friendsPerUser) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, "sa", "password");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"))
+                .execute(dataSource);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        Random random = new Random(42);
+        Date birthday = Date.valueOf(LocalDate.of(1990, 1, 1));
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        for (long userId = 1; userId <= users + 1L; userId++) {
+            rows.add(new Object[]{"user" + userId + "@mail.ru", "user" + userId, "User " + userId, birthday});
+            rows = flushIfFull(jdbc, "INSERT INTO users(email, login, name, birthday) VALUES (?, ?, ?, ?)", rows);
+        }
+        flush(jdbc, "INSERT INTO users(email, login, name, birthday) VALUES (?, ?, ?, ?)", rows);
+
+        for (int filmId = 1; filmId <= films; filmId++) {
+            rows.add(new Object[]{"Film " + filmId, "Description " + filmId,
+                    Date.valueOf(LocalDate.of(1950 + filmId % 70, 1 + filmId % 12, 1)), 90 + filmId % 60,
+                    1 + filmId % RATINGS});
+            rows = flushIfFull(jdbc, "INSERT INTO film(name, description, release_date, duration, rating_id) " +
+                    "VALUES (?, ?, ?, ?, ?)", rows);
+        }
+        flush(jdbc, "INSERT INTO film(name, description, release_date, duration, rating_id) " +
+                "VALUES (?, ?, ?, ?, ?)", rows);
+
+        for (int filmId = 1; filmId <= films; filmId++) {
+            rows.add(new Object[]{filmId, 1 + filmId % GENRES});
+            if (filmId % 2 == 0) {
+                rows.add(new Object[]{filmId, 1 + (filmId / 2) % GENRES});
+            }
+            rows = flushIfFull(jdbc, "MERGE INTO film_genre(film_id, genre_id) KEY(film_id, genre_id) VALUES (?, ?)",
+                    rows);
+        }
+        flush(jdbc, "MERGE INTO film_genre(film_id, genre_id) KEY(film_id, genre_id) VALUES (?, ?)", rows);
+
+        // Число лайков у фильмов неравномерно: от 0 до 2 * likesPerFilm, лайкают подряд идущие пользователи
+        for (int filmId = 1; filmId <= films; filmId++) {
+            int likes = Math.min(users, random.nextInt(2 * likesPerFilm + 1));
+            int offset = random.nextInt(users);
+            for (int i = 0; i < likes; i++) {
+                rows.add(new Object[]{filmId, 1L + (offset + i) % users});
+                rows = flushIfFull(jdbc, "INSERT INTO film_userlikes(film_id, user_id) VALUES (?, ?)", rows);
+            }
+        }
+        flush(jdbc, "INSERT INTO film_userlikes(film_id, user_id) VALUES (?, ?)", rows);
+        jdbc.update("UPDATE film f SET like_count = (SELECT COUNT(*) FROM film_userlikes fu WHERE fu.film_id = f.id)");
+
+        for (long userId = 1; userId <= users; userId++) {
+            int offset = random.nextInt(users);
+            int friends = Math.min(users - 1, friendsPerUser);
+            for (int i = 0, added = 0; added < friends; i++) {
+                long friendId = 1L + (offset + i) % users;
+                if (friendId != userId) {
+                    rows.add(new Object[]{userId, friendId});
+                    added++;
+                }
+                rows = flushIfFull(jdbc, "INSERT INTO user_friends(user_id, user_friend_id) VALUES (?, ?)", rows);
+            }
+        }
+        flush(jdbc, "INSERT INTO user_friends(user_id, user_friend_id) VALUES (?, ?)", rows);
+    }
+
+    private static List<Object[]> flushIfFull(JdbcTemplate jdbc, String query, List<Object[]> rows) {
+        if (rows.size() < BATCH_SIZE) {
+            return rows;
+        }
+        flush(jdbc, query, rows);
+        return rows;
+    }
+
+    private static void flush(JdbcTemplate jdbc, String query, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbc.batchUpdate(query, rows);
+            rows.clear();
+        }
+    }
+}
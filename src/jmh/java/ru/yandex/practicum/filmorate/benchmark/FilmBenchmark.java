@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmProjection;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути фильмов: полная выборка, фильм по id, популярные фильмы и добавление/удаление лайка.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmBenchmark {
+    @Param("2000")
+    private int users;
+
+    @Param("1000")
+    private int films;
+
+    @Param("20")
+    private int likesPerFilm;
+
+    @Param({"false", "true"})
+    private boolean cache;
+
+    private BenchmarkDataset dataset;
+    private FilmStorage filmStorage;
+    private FilmService filmService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataset = BenchmarkDataset.start(users, films, likesPerFilm, 0, cache);
+        filmStorage = dataset.bean(FilmStorage.class);
+        filmService = dataset.bean(FilmService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataset.close();
+    }
+
+    @Benchmark
+    public Collection<Film> findAll() {
+        return filmStorage.findAll();
+    }
+
+    @Benchmark
+    public Collection<Film> findAllSummaries() {
+        return filmStorage.findAllSummaries();
+    }
+
+    @Benchmark
+    public Optional<Film> findFilmById() {
+        return filmStorage.findFilmById(dataset.randomFilmId());
+    }
+
+    @Benchmark
+    public Collection<FilmDto> getTopPopularFilms() {
+        return filmService.getTopPopularFilms(10, null, null, null, FilmProjection.FULL);
+    }
+
+    @Benchmark
+    public Collection<FilmDto> getTopPopularFilmSummaries() {
+        return filmService.getTopPopularFilms(10, null, null, null, FilmProjection.SUMMARY);
+    }
+
+    @Benchmark
+    public Collection<FilmDto> getTopPopularFilmsByGenreAndRating() {
+        return filmService.getTopPopularFilms(10, 1, 2, null, FilmProjection.SUMMARY);
+    }
+
+    @Benchmark
+    public void addAndDeleteLike() {
+        int filmId = dataset.randomFilmId();
+        filmService.addLike(filmId, dataset.idleUserId());
+        filmService.deleteLike(filmId, dataset.idleUserId());
+    }
+}
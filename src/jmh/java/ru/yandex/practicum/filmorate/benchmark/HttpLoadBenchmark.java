@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность HTTP API при большом числе одновременных клиентов: обработка запросов на пуле
+ * потоков Tomcat против профиля virtual с виртуальными потоками. Число клиентов задается ключом JMH -t.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(400)
+@Fork(1)
+public class HttpLoadBenchmark {
+    @Param("2000")
+    private int users;
+
+    @Param("1000")
+    private int films;
+
+    @Param({"false", "true"})
+    private boolean virtualThreads;
+
+    private BenchmarkDataset dataset;
+    private HttpClient client;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataset = BenchmarkDataset.startServer(users, films, 20, 50, true,
+                "spring.profiles.active=" + (virtualThreads ? "virtual" : "default"));
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        baseUrl = "http://localhost:" + dataset.port();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        dataset.close();
+    }
+
+    @Benchmark
+    public int popularFilms() throws IOException, InterruptedException {
+        return get("/films/popular?count=10");
+    }
+
+    @Benchmark
+    public int userFriends() throws IOException, InterruptedException {
+        return get("/users/" + dataset.randomUserId() + "/friends");
+    }
+
+    private int get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("GET " + path + " вернул " + response.statusCode());
+        }
+        return response.body().length;
+    }
+}
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.dto.UserDto;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лайк, друг и общие друзья при росте таблиц связей: в film_userlikes и user_friends по linkRows строк при
+ * неизменном числе пользователей и фильмов. Благодаря уникальным и обратным индексам время операций
+ * не должно расти вместе с linkRows. Near-cache выключен, чтобы каждый вызов доходил до БД.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LinkTableScalingBenchmark {
+    private static final int USERS = 10_000;
+    private static final int FILMS = 1_000;
+
+    @Param({"10000", "1000000"})
+    private int linkRows;
+
+    private BenchmarkDataset dataset;
+    private FilmService filmService;
+    private UserService userService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataset = BenchmarkDataset.start(USERS, FILMS, linkRows / FILMS, linkRows / USERS, false);
+        filmService = dataset.bean(FilmService.class);
+        userService = dataset.bean(UserService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataset.close();
+    }
+
+    @Benchmark
+    public void addAndDeleteLike() {
+        int filmId = dataset.randomFilmId();
+        filmService.addLike(filmId, dataset.idleUserId());
+        filmService.deleteLike(filmId, dataset.idleUserId());
+    }
+
+    @Benchmark
+    public void addAndDeleteFriend() {
+        long friendId = dataset.randomUserId();
+        userService.addFriend(dataset.idleUserId(), friendId);
+        userService.deleteFriend(dataset.idleUserId(), friendId);
+    }
+
+    @Benchmark
+    public Collection<UserDto> getCommonFriends() {
+        return userService.getCommonFriends(dataset.randomUserId(), dataset.randomUserId());
+    }
+}
@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.RatingStorage;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmMerger;
+import ru.yandex.practicum.filmorate.storage.mappers.UserExtractor;
+
+import javax.sql.RowSetMetaData;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор результата запроса в модели без обращения к БД: строки один раз читаются в {@link CachedRowSet},
+ * и замеряется только сборка моделей.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+    private static final String FILMS_QUERY = "SELECT * FROM film ORDER BY id";
+    private static final String GENRES_QUERY = "SELECT film_id, genre_id FROM film_genre ORDER BY film_id, genre_id";
+    private static final String LIKES_QUERY = "SELECT film_id, user_id FROM film_userlikes ORDER BY film_id, user_id";
+    private static final String USERS_QUERY = "SELECT u.*, uf.user_friend_id FROM users u " +
+            "LEFT JOIN user_friends uf ON u.id = uf.user_id";
+
+    @Param("1000")
+    private int size;
+
+    private FilmMerger filmMerger;
+    private final UserExtractor userExtractor = new UserExtractor();
+    private CachedRowSet filmRows;
+    private CachedRowSet genreRows;
+    private CachedRowSet likeRows;
+    private CachedRowSet userRows;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        try (BenchmarkDataset dataset = BenchmarkDataset.start(size, size, 20, 20, false)) {
+            JdbcTemplate jdbc = dataset.bean(JdbcTemplate.class);
+            filmMerger = new FilmMerger(dataset.bean(GenreStorage.class), dataset.bean(RatingStorage.class));
+            filmRows = jdbc.execute(load(FILMS_QUERY));
+            genreRows = jdbc.execute(load(GENRES_QUERY));
+            likeRows = jdbc.execute(load(LIKES_QUERY));
+            userRows = jdbc.execute(load(USERS_QUERY));
+        }
+    }
+
+    @Benchmark
+    public Collection<Film> mergeFilms() throws SQLException {
+        filmRows.beforeFirst();
+        genreRows.beforeFirst();
+        likeRows.beforeFirst();
+        List<Film> films = new ArrayList<>(size);
+        filmMerger.merge(filmRows, genreRows, likeRows, films::add);
+        return films;
+    }
+
+    @Benchmark
+    public Collection<User> extractUsers() throws SQLException {
+        userRows.beforeFirst();
+        return userExtractor.extractData(userRows);
+    }
+
+    private static ConnectionCallback<CachedRowSet> load(String query) {
+        return connection -> {
+            try (Statement statement = connection.createStatement()) {
+                CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+                rows.populate(statement.executeQuery(query));
+                // CachedRowSet ищет колонки по имени, а не по метке, поэтому псевдонимы переносятся в имена
+                RowSetMetaData metaData = (RowSetMetaData) rows.getMetaData();
+                for (int column = 1; column <= metaData.getColumnCount(); column++) {
+                    metaData.setColumnName(column, metaData.getColumnLabel(column));
+                }
+                return rows;
+            }
+        };
+    }
+}
@@ -0,0 +1,148 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.MemoryPersistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Журнал хранилища пользователей в памяти без БД: стоимость изменения с fsync и без него (при нескольких
+ * потоках, -t, изменения сбрасываются на диск общими пачками) и время старта из снимка с хвостом журнала.
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class MemoryPersistenceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Writes {
+        @Param({"false", "true"})
+        private boolean fsync;
+
+        @Param("10000")
+        private int users;
+
+        private Path directory;
+        private InMemoryUserStorage storage;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("filmorate-journal");
+            storage = new InMemoryUserStorage(new MemoryPersistence(directory.toString(), fsync, 0));
+            storage.recover();
+            for (int i = 0; i < users; i++) {
+                storage.create(user(i));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            storage.close();
+            delete(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Startup {
+        @Param("100000")
+        private int users;
+
+        @Param("10")
+        private int friendsPerUser;
+
+        @Param({"0", "100000"})
+        private int journalTail;
+
+        private Path directory;
+        private InMemoryUserStorage recovered;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("filmorate-journal");
+            InMemoryUserStorage storage = new InMemoryUserStorage(
+                    new MemoryPersistence(directory.toString(), false, 0));
+            storage.recover();
+            Random random = new Random(42);
+            for (int i = 0; i < users; i++) {
+                storage.create(user(i));
+            }
+            for (long userId = 1; userId <= users; userId++) {
+                for (int i = 0; i < friendsPerUser; i++) {
+                    storage.addFriend(userId, 1 + (long) random.nextInt(users));
+                }
+            }
+            storage.snapshot();
+            for (int i = 0; i < journalTail; i++) {
+                storage.addFriend(1 + (long) random.nextInt(users), 1 + (long) random.nextInt(users));
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void closeRecovered() {
+            recovered.close();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            delete(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void addFriend(Writes state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        state.storage.addFriend(random.nextLong(1, state.users + 1), random.nextLong(1, state.users + 1));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public InMemoryUserStorage recover(Startup state) {
+        state.recovered = new InMemoryUserStorage(new MemoryPersistence(state.directory.toString(), false, 0));
+        state.recovered.recover();
+        return state.recovered;
+    }
+
+    private static User user(int i) {
+        return User.builder()
+                .email("user" + i + "@mail.ru")
+                .login("user" + i)
+                .name("User " + i)
+                .birthday(LocalDate.of(1990, 1, 1).plusDays(i % 10000))
+                .build();
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.storage.FilmRecommendationIndex;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рекомендации по индексу лайков без обращения к БД: индекс заполняется синтетическими лайками через
+ * {@link FilmRecommendationIndex#update}, популярные фильмы лайкают чаще остальных.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class RecommendationBenchmark {
+    @Param("1000000")
+    private int users;
+
+    @Param("20000")
+    private int films;
+
+    @Param("20")
+    private int likesPerUser;
+
+    private BenchmarkDataset dataset;
+    private FilmRecommendationIndex recommendationIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataset = BenchmarkDataset.start(1, 1, 0, 0, false);
+        recommendationIndex = dataset.bean(FilmRecommendationIndex.class);
+        recommendationIndex.recommendFilmIds(0, 1);
+        Random random = new Random(42);
+        for (long userId = 1; userId <= users; userId++) {
+            for (int i = 0; i < likesPerUser; i++) {
+                double skew = random.nextDouble();
+                recommendationIndex.update(userId, 1 + (int) (films * skew * skew), true);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataset.close();
+    }
+
+    @Benchmark
+    public List<Integer> recommendFilmIds() {
+        return recommendationIndex.recommendFilmIds(ThreadLocalRandom.current().nextLong(1, users + 1), 10);
+    }
+}
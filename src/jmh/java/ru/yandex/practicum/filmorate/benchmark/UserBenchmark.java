@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.dto.UserDto;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.GraphUserStorage;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути пользователей: пользователь по id, список друзей, общие друзья, предложения друзей
+ * и добавление/удаление друга.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserBenchmark {
+    @Param("2000")
+    private int users;
+
+    @Param("50")
+    private int friendsPerUser;
+
+    @Param({"false", "true"})
+    private boolean cache;
+
+    @Param({"db", "graph"})
+    private String storage;
+
+    private BenchmarkDataset dataset;
+    private UserService userService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataset = BenchmarkDataset.start(users, 0, 0, friendsPerUser, cache, "filmorate.users.storage=" + storage);
+        if ("graph".equals(storage)) {
+            // Данные заливаются в БД после старта приложения, поэтому хранилище в памяти загружается заново
+            dataset.bean(GraphUserStorage.class).load();
+        }
+        userService = dataset.bean(UserService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataset.close();
+    }
+
+    @Benchmark
+    public UserDto findUserById() {
+        return userService.findUserById(dataset.randomUserId());
+    }
+
+    @Benchmark
+    public Collection<UserDto> getUserFriends() {
+        return userService.getUserFriends(dataset.randomUserId(), null, null, true);
+    }
+
+    @Benchmark
+    public Collection<UserDto> getUserFriendsPageWithoutNested() {
+        return userService.getUserFriends(dataset.randomUserId(), null, 10, false);
+    }
+
+    @Benchmark
+    public Collection<UserDto> getCommonFriends() {
+        return userService.getCommonFriends(dataset.randomUserId(), dataset.randomUserId());
+    }
+
+    @Benchmark
+    public Collection<UserDto> getFriendSuggestions() {
+        return userService.getFriendSuggestions(dataset.randomUserId(), 10);
+    }
+
+    @Benchmark
+    public void addAndDeleteFriend() {
+        long friendId = dataset.randomUserId();
+        userService.addFriend(dataset.idleUserId(), friendId);
+        userService.deleteFriend(dataset.idleUserId(), friendId);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Кэши агрегатов фильма и пользователя и списков друзей перед хранилищами в БД. Вес записи растет с числом лайков
+ * или друзей, поэтому популярные фильмы и пользователи с большим числом друзей вытесняются раньше.
+ * Ограничение max-weight = 0 фактически отключает кэш.
+ */
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public Cache<Integer, Film> filmCache(
+            @Value("${filmorate.cache.films.max-weight:100000}") long maxWeight,
+            @Value("${filmorate.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Integer id, Film film) -> 1 + film.getUserLikes().size())
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    @Bean
+    public Cache<Long, User> userCache(
+            @Value("${filmorate.cache.users.max-weight:100000}") long maxWeight,
+            @Value("${filmorate.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Long id, User user) -> 1 + (Objects.isNull(user.getFriends()) ? 0 :
+                        user.getFriends().size()))
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    @Bean
+    public Cache<Long, long[]> friendIdsCache(
+            @Value("${filmorate.cache.friends.max-weight:1000000}") long maxWeight,
+            @Value("${filmorate.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Long id, long[] friendIds) -> 1 + friendIds.length)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+}
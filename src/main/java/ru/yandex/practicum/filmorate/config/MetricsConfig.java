@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.metrics.QueryCountingDataSource;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.LikeWriteBehindQueue;
+import ru.yandex.practicum.filmorate.storage.MemoryPersistence;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики приложения сверх стандартных метрик Spring Boot: статистика кэшей, состояние очереди отложенной записи
+ * лайков, число сломанных журналов хранилищ в памяти и подсчет SQL-запросов через обертку над источником данных.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public static BeanPostProcessor queryCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof QueryCountingDataSource)) {
+                    return new QueryCountingDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder cacheMetrics(Cache<Integer, Film> filmCache, Cache<Long, User> userCache,
+                                    Cache<Long, long[]> friendIdsCache) {
+        return registry -> {
+            CaffeineCacheMetrics.monitor(registry, filmCache, "films");
+            CaffeineCacheMetrics.monitor(registry, userCache, "users");
+            CaffeineCacheMetrics.monitor(registry, friendIdsCache, "friendIds");
+        };
+    }
+
+    @Bean
+    public MeterBinder likeQueueMetrics(LikeWriteBehindQueue likeQueue) {
+        return registry -> {
+            Gauge.builder("filmorate.likes.queue.depth", likeQueue, queue -> queue.stats().queueDepth())
+                    .description("Число изменений лайков, ожидающих записи в БД")
+                    .register(registry);
+            FunctionCounter.builder("filmorate.likes.queue.flushes", likeQueue, queue -> queue.stats().flushes())
+                    .description("Число пакетных записей лайков")
+                    .register(registry);
+            FunctionCounter.builder("filmorate.likes.queue.flushed", likeQueue,
+                            queue -> queue.stats().flushedMutations())
+                    .description("Число изменений лайков, записанных пакетами")
+                    .register(registry);
+            Gauge.builder("filmorate.likes.queue.flush.max", likeQueue,
+                            queue -> TimeUnit.NANOSECONDS.toMillis(queue.stats().maxFlushNanos()))
+                    .description("Самая долгая пакетная запись лайков, мс")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder memoryJournalMetrics(MemoryPersistence persistence) {
+        return registry -> Gauge.builder("filmorate.memory.journal.failed", persistence,
+                        MemoryPersistence::failedJournals)
+                .description("Число журналов хранилищ в памяти, запись в которые остановилась после ошибки")
+                .register(registry);
+    }
+}
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.service.ExportService;
+
+import java.io.OutputStream;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Потоковая выгрузка в NDJSON, по одной записи на строку. С параметром gzip=true ответ сжимается
+ * и отдается файлом *.ndjson.gz.
+ */
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/export")
+public class ExportController {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final ExportService exportService;
+
+    @GetMapping("/films")
+    public ResponseEntity<StreamingResponseBody> exportFilms(@RequestParam(defaultValue = "false") boolean gzip) {
+        return export("films", gzip, exportService::exportFilms);
+    }
+
+    @GetMapping("/users")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(defaultValue = "false") boolean gzip) {
+        return export("users", gzip, exportService::exportUsers);
+    }
+
+    @GetMapping("/likes")
+    public ResponseEntity<StreamingResponseBody> exportLikes(@RequestParam(defaultValue = "false") boolean gzip) {
+        return export("likes", gzip, exportService::exportLikes);
+    }
+
+    @GetMapping("/friends")
+    public ResponseEntity<StreamingResponseBody> exportFriendships(
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        return export("friends", gzip, exportService::exportFriendships);
+    }
+
+    private ResponseEntity<StreamingResponseBody> export(String name, boolean gzip, Consumer<OutputStream> exporter) {
+        if (!gzip) {
+            return ResponseEntity.ok().contentType(NDJSON).body(exporter::accept);
+        }
+        StreamingResponseBody body = outputStream -> {
+            try (GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE)) {
+                exporter.accept(gzipStream);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/gzip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(name + ".ndjson.gz").build().toString())
+                .body(body);
+    }
+}
@@ -1,7 +1,11 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -11,11 +15,16 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmProjection;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collection;
+import java.util.Objects;
 
 @Slf4j
 @RestController
@@ -23,10 +32,34 @@ import java.util.Collection;
 @RequiredArgsConstructor
 public class FilmController {
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
-    public Collection<FilmDto> findAll() {
-        return filmService.findAll();
+    public Collection<FilmDto> findAll(@RequestParam(name = "after_id", required = false) Integer afterId,
+                                       @RequestParam(required = false) Integer limit,
+                                       @RequestParam(defaultValue = "full") String projection) {
+        if (Objects.isNull(afterId) && Objects.isNull(limit)) {
+            return filmService.findAll(FilmProjection.from(projection));
+        }
+        return filmService.findPage(afterId, limit, FilmProjection.from(projection));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                filmService.streamAll(film -> {
+                    try {
+                        objectMapper.writeValue(generator, film);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
     @GetMapping("/{id}")
@@ -34,6 +67,13 @@ public class FilmController {
         return filmService.findFilmById(id);
     }
 
+    @GetMapping("/{id}/likes")
+    public Collection<Long> findLikes(@PathVariable Integer id,
+                                      @RequestParam(name = "after_id", required = false) Long afterUserId,
+                                      @RequestParam(required = false) Integer limit) {
+        return filmService.findLikes(id, afterUserId, limit);
+    }
+
     @PostMapping
     public FilmDto create(@RequestBody Film newFilm) {
         return filmService.create(newFilm);
@@ -56,7 +96,11 @@ public class FilmController {
 
     @GetMapping("/popular")
     public Collection<FilmDto> topPopularFilms(
-            @RequestParam(defaultValue = "10") int count) {
-        return filmService.getTopPopularFilms(count);
+            @RequestParam(defaultValue = "10") int count,
+            @RequestParam(required = false) Integer genreId,
+            @RequestParam(required = false) Integer mpaId,
+            @RequestParam(required = false) Integer year,
+            @RequestParam(defaultValue = "full") String projection) {
+        return filmService.getTopPopularFilms(count, genreId, mpaId, year, FilmProjection.from(projection));
     }
 }
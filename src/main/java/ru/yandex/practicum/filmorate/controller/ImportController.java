@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.dto.ImportResultDto;
+import ru.yandex.practicum.filmorate.service.ImportService;
+
+import java.io.InputStream;
+
+/**
+ * Массовый импорт: тело запроса - NDJSON, по одной записи на строку.
+ */
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/import")
+public class ImportController {
+    private final ImportService importService;
+
+    @PostMapping("/films")
+    public ImportResultDto importFilms(InputStream body) {
+        return importService.importFilms(body);
+    }
+
+    @PostMapping("/users")
+    public ImportResultDto importUsers(InputStream body) {
+        return importService.importUsers(body);
+    }
+
+    @PostMapping("/likes")
+    public ImportResultDto importLikes(InputStream body) {
+        return importService.importLikes(body);
+    }
+
+    @PostMapping("/friends")
+    public ImportResultDto importFriendships(InputStream body) {
+        return importService.importFriendships(body);
+    }
+}
@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.model.FilmProjection;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.util.Collection;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/users")
+public class RecommendationController {
+    private final FilmService filmService;
+
+    @GetMapping("/{id}/recommendations")
+    public Collection<FilmDto> getRecommendations(@PathVariable Long id,
+                                                  @RequestParam(defaultValue = "10") int count,
+                                                  @RequestParam(defaultValue = "full") String projection) {
+        return filmService.getRecommendations(id, count, FilmProjection.from(projection));
+    }
+}
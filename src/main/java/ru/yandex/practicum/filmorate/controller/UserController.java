@@ -9,6 +9,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import ru.yandex.practicum.filmorate.dto.UserDto;
 import ru.yandex.practicum.filmorate.model.User;
@@ -54,8 +55,11 @@ public class UserController {
     }
 
     @GetMapping("/{id}/friends")
-    public Collection<UserDto> getFriends(@PathVariable Long id) {
-        return userService.getUserFriends(id);
+    public Collection<UserDto> getFriends(@PathVariable Long id,
+                                          @RequestParam(name = "after_id", required = false) Long afterFriendId,
+                                          @RequestParam(required = false) Integer limit,
+                                          @RequestParam(defaultValue = "true") boolean nested) {
+        return userService.getUserFriends(id, afterFriendId, limit, nested);
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
@@ -63,5 +67,11 @@ public class UserController {
         return userService.getCommonFriends(id, otherId);
     }
 
+    @GetMapping("/{id}/suggestions")
+    public Collection<UserDto> getFriendSuggestions(@PathVariable Long id,
+                                                    @RequestParam(defaultValue = "10") int count) {
+        return userService.getFriendSuggestions(id, count);
+    }
+
 }
 
@@ -1,8 +1,10 @@
 package ru.yandex.practicum.filmorate.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
 import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.SortedLongSet;
 
 import java.time.LocalDate;
 import java.util.Set;
@@ -16,7 +18,9 @@ public class FilmDto {
     private String description;
     private LocalDate releaseDate;
     private Integer duration; //минуты
-    private Set<Long> userLikes;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private SortedLongSet userLikes;
+    private int likeCount;
     private Rating mpa;
     private Set<GenreDto> genres;
 }
@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ImportErrorDto {
+
+    private long line;
+    private String error;
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ImportResultDto {
+
+    private long imported;
+    private long failed;
+    private List<Number> createdIds;
+    private List<ImportErrorDto> errors;
+    private long durationMs;
+    private long recordsPerSecond;
+}
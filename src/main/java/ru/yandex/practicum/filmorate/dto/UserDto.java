@@ -1,10 +1,11 @@
 package ru.yandex.practicum.filmorate.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
+import ru.yandex.practicum.filmorate.model.SortedLongSet;
 
 import java.time.LocalDate;
-import java.util.Set;
 
 @Data
 @Builder
@@ -15,5 +16,8 @@ public class UserDto {
     private String login;
     private String name;
     private LocalDate birthday;
-    private Set<Long> friends;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private SortedLongSet friends;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer mutualFriends;
 }
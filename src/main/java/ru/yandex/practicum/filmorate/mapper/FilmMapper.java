@@ -4,9 +4,10 @@ import lombok.experimental.UtilityClass;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.GenreDto;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmProjection;
+import ru.yandex.practicum.filmorate.model.SortedLongSet;
 
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -14,18 +15,43 @@ import java.util.stream.Collectors;
 @UtilityClass
 public final class FilmMapper {
     public static FilmDto modelToDto(Film film) {
+        SortedLongSet userLikes = Objects.isNull(film.getUserLikes()) ? new SortedLongSet() : film.getUserLikes();
+        return toDtoBuilder(film)
+                .userLikes(userLikes)
+                .likeCount(userLikes.size())
+                .build();
+    }
+
+    /**
+     * Краткий вид фильма для списков: только число лайков, без множества id пользователей.
+     */
+    public static FilmDto modelToSummaryDto(Film film) {
+        int likeCount;
+        if (!Objects.isNull(film.getLikeCount())) {
+            likeCount = film.getLikeCount();
+        } else {
+            likeCount = Objects.isNull(film.getUserLikes()) ? 0 : film.getUserLikes().size();
+        }
+        return toDtoBuilder(film)
+                .likeCount(likeCount)
+                .build();
+    }
+
+    public static FilmDto modelToDto(Film film, FilmProjection projection) {
+        return projection == FilmProjection.SUMMARY ? modelToSummaryDto(film) : modelToDto(film);
+    }
+
+    private static FilmDto.FilmDtoBuilder toDtoBuilder(Film film) {
         return FilmDto.builder()
                 .id(film.getId())
                 .name(film.getName())
                 .description(film.getDescription())
                 .duration(film.getDuration())
                 .releaseDate(film.getReleaseDate())
-                .userLikes(Objects.isNull(film.getUserLikes()) ? new HashSet<>() : film.getUserLikes())
                 .mpa(film.getMpa())
                 .genres(film.getGenres().stream()
                         .map(GenreMapper::modelToDto)
                         .sorted(Comparator.comparingInt(GenreDto::getId))
-                        .collect(Collectors.toCollection(LinkedHashSet::new)))
-                .build();
+                        .collect(Collectors.toCollection(LinkedHashSet::new)));
     }
 }
\ No newline at end of file
@@ -2,21 +2,33 @@ package ru.yandex.practicum.filmorate.mapper;
 
 import lombok.experimental.UtilityClass;
 import ru.yandex.practicum.filmorate.dto.UserDto;
+import ru.yandex.practicum.filmorate.model.SortedLongSet;
 import ru.yandex.practicum.filmorate.model.User;
 
-import java.util.HashSet;
 import java.util.Objects;
 
 @UtilityClass
 public final class UserMapper {
     public static UserDto modelToDto(User user) {
+        return toDtoBuilder(user)
+                .friends(Objects.isNull(user.getFriends()) ? new SortedLongSet() : user.getFriends())
+                .build();
+    }
+
+    /**
+     * Краткий вид пользователя без множества id его друзей.
+     */
+    public static UserDto modelToSummaryDto(User user) {
+        return toDtoBuilder(user).build();
+    }
+
+    private static UserDto.UserDtoBuilder toDtoBuilder(User user) {
         return UserDto.builder()
                 .id(user.getId())
                 .login(user.getLogin())
                 .name(user.getName())
                 .email(user.getEmail())
                 .birthday(user.getBirthday())
-                .friends(Objects.isNull(user.getFriends()) ? new HashSet<>() : user.getFriends())
-                .build();
+                .mutualFriends(user.getMutualFriends());
     }
 }
@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Записывает число SQL-запросов каждого HTTP-запроса в распределение filmorate.jdbc.queries с тегами метода
+ * и шаблона пути, поэтому эндпоинты с N+1 выделяются по росту числа запросов вместе с размером выборки.
+ * Для потоковой выгрузки учитываются только запросы до начала записи тела, сама выгрузка идет асинхронно.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class JdbcQueryCountFilter extends OncePerRequestFilter {
+    private final MeterRegistry registry;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AtomicInteger queries = JdbcQueryCounter.start();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            JdbcQueryCounter.stop();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = Objects.isNull(pattern) ? "UNKNOWN" : pattern.toString();
+            DistributionSummary.builder("filmorate.jdbc.queries")
+                    .description("Число SQL-запросов на один HTTP-запрос")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri)
+                    .register(registry)
+                    .record(queries.get());
+            log.debug("{} {}: SQL-запросов {}", request.getMethod(), uri, queries.get());
+        }
+    }
+}
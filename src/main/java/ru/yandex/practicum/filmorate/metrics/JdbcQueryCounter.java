@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Счетчик SQL-запросов текущего HTTP-запроса. Счетчик привязан к потоку запроса и не наследуется: работа,
+ * переданная в другой поток, учитывается, только если обернута в propagate. Асинхронная выгрузка
+ * через StreamingResponseBody идет уже после завершения фильтра и в счетчик не попадает.
+ */
+@UtilityClass
+public final class JdbcQueryCounter {
+    private static final ThreadLocal<AtomicInteger> COUNTER = new ThreadLocal<>();
+
+    public static AtomicInteger start() {
+        AtomicInteger counter = new AtomicInteger();
+        COUNTER.set(counter);
+        return counter;
+    }
+
+    public static void stop() {
+        COUNTER.remove();
+    }
+
+    /**
+     * Оборачивает задачу для другого потока так, что ее запросы учитываются в счетчике текущего потока.
+     */
+    public static Runnable propagate(Runnable task) {
+        AtomicInteger counter = COUNTER.get();
+        if (counter == null) {
+            return task;
+        }
+        return () -> {
+            COUNTER.set(counter);
+            try {
+                task.run();
+            } finally {
+                COUNTER.remove();
+            }
+        };
+    }
+
+    static void increment() {
+        AtomicInteger counter = COUNTER.get();
+        if (counter != null) {
+            counter.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Замеряет время каждого публичного метода хранилищ фильмов и пользователей в таймере filmorate.storage
+ * с тегами класса хранилища, метода и исключения; число вызовов и ошибок берется из того же таймера.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class StorageMetricsAspect {
+    private final MeterRegistry registry;
+
+    @Around("execution(public * ru.yandex.practicum.filmorate.storage.FilmStorage+.*(..)) || " +
+            "execution(public * ru.yandex.practicum.filmorate.storage.UserStorage+.*(..))")
+    public Object timeStorageCall(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(registry);
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("filmorate.storage")
+                    .description("Время вызова метода хранилища")
+                    .tag("storage", joinPoint.getTarget().getClass().getSimpleName())
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("exception", exception)
+                    .register(registry));
+        }
+    }
+}
@@ -10,7 +10,7 @@ import java.util.Set;
  * Film.
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class Film {
 
     private int id;
@@ -18,7 +18,8 @@ public class Film {
     private String description;
     private LocalDate releaseDate;
     private Integer duration; //минуты
-    private Set<Long> userLikes;
+    private SortedLongSet userLikes;
+    private Integer likeCount;
     private Rating mpa;
     private Set<Genre> genres;
 }
@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.model;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.Locale;
+
+/**
+ * Вид фильма в списках: FULL - со всеми id лайкнувших пользователей, SUMMARY - только с числом лайков.
+ */
+public enum FilmProjection {
+    FULL,
+    SUMMARY;
+
+    public static FilmProjection from(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException(
+                    String.format("Неизвестный вид фильма %s, допустимые значения: full, summary", value));
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.model;
+
+/**
+ * Односторонняя дружба: пользователь userId добавил в друзья пользователя friendId.
+ */
+public record Friendship(Long userId, Long friendId) {
+}
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.model;
+
+/**
+ * Лайк пользователя к фильму.
+ */
+public record Like(Integer filmId, Long userId) {
+}
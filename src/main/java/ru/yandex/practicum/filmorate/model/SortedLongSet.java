@@ -0,0 +1,171 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Множество id на отсортированном массиве long: 8 байт на элемент вместо упакованного Long и узла HashMap.
+ * Поиск - бинарный, вставка и удаление сдвигают хвост массива, а добавление по возрастанию стоит O(1),
+ * поэтому множества, собранные из упорядоченной выборки, строятся за линейное время.
+ * В JSON сериализуется и читается как обычный массив чисел.
+ */
+public class SortedLongSet extends AbstractSet<Long> {
+    private static final long[] EMPTY = new long[0];
+
+    private long[] values;
+    private int size;
+    private int modCount;
+
+    public SortedLongSet() {
+        values = EMPTY;
+    }
+
+    private SortedLongSet(long[] values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    public static SortedLongSet of(long... ids) {
+        long[] values = ids.clone();
+        Arrays.sort(values);
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] != values[i - 1]) {
+                values[size++] = values[i];
+            }
+        }
+        return new SortedLongSet(values, size);
+    }
+
+    /**
+     * Копирует массив, который уже отсортирован по возрастанию и не содержит повторов.
+     */
+    public static SortedLongSet ofSorted(long[] sortedIds) {
+        return new SortedLongSet(sortedIds.clone(), sortedIds.length);
+    }
+
+    public boolean contains(long id) {
+        return Arrays.binarySearch(values, 0, size, id) >= 0;
+    }
+
+    public boolean add(long id) {
+        if (size > 0 && values[size - 1] < id) {
+            insert(size, id);
+            return true;
+        }
+        int position = Arrays.binarySearch(values, 0, size, id);
+        if (position >= 0) {
+            return false;
+        }
+        insert(-position - 1, id);
+        return true;
+    }
+
+    public boolean remove(long id) {
+        int position = Arrays.binarySearch(values, 0, size, id);
+        if (position < 0) {
+            return false;
+        }
+        removeAt(position);
+        return true;
+    }
+
+    public long[] toLongArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Независимая копия множества.
+     */
+    public SortedLongSet copy() {
+        return new SortedLongSet(toLongArray(), size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long id && contains(id.longValue());
+    }
+
+    @Override
+    public boolean add(Long id) {
+        return add(id.longValue());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Long id && remove(id.longValue());
+    }
+
+    @Override
+    public void clear() {
+        values = EMPTY;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        return new Iterator<>() {
+            private int next;
+            private int last = -1;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Long next() {
+                checkForComodification();
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                last = next++;
+                return values[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                checkForComodification();
+                removeAt(last);
+                next = last;
+                last = -1;
+                expectedModCount = modCount;
+            }
+
+            private void checkForComodification() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+        };
+    }
+
+    private void insert(int position, long id) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(4, size + (size >> 1)));
+        }
+        System.arraycopy(values, position, values, position + 1, size - position);
+        values[position] = id;
+        size++;
+        modCount++;
+    }
+
+    private void removeAt(int position) {
+        System.arraycopy(values, position + 1, values, position, size - position - 1);
+        size--;
+        modCount++;
+    }
+}
@@ -4,13 +4,12 @@ import lombok.Builder;
 import lombok.Data;
 
 import java.time.LocalDate;
-import java.util.Set;
 
 /**
  * User.
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class User {
 
     private long id;
@@ -18,5 +17,6 @@ public class User {
     private String login;
     private String name;
     private LocalDate birthday;
-    private Set<Long> friends;
+    private SortedLongSet friends;
+    private Integer mutualFriends;
 }
@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.metrics.JdbcQueryCounter;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Выполняет независимые проверки одновременно, поэтому задержка равна самой долгой проверке, а не их сумме.
+ * Первая проверка идет в вызывающем потоке, остальные - на общем исполнителе виртуальных потоков. Каждая
+ * проверка в другом потоке занимает свое соединение из пула, поэтому таких проверок во всем приложении
+ * одновременно не больше MAX_OFFLOADED; если лимит исчерпан, проверка выполняется в вызывающем потоке, и под
+ * нагрузкой запрос занимает одно соединение, как при последовательных проверках. Запросы вынесенных проверок
+ * учитываются в счетчике SQL-запросов вызывающего потока.
+ * Ошибки пробрасываются в порядке объявления проверок, как при последовательном выполнении, а после первой
+ * ошибки остальные проверки отменяются. Внутри транзакции проверки идут последовательно в вызывающем потоке,
+ * иначе они не увидят ее незафиксированные изменения.
+ */
+@UtilityClass
+final class ConcurrentChecks {
+    private static final int MAX_OFFLOADED = 4;
+    private static final Semaphore OFFLOAD_PERMITS = new Semaphore(MAX_OFFLOADED);
+    private static final Executor EXECUTOR =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("existence-check-", 0).factory());
+
+    static void runAll(Runnable... checks) {
+        if (checks.length < 2 || TransactionSynchronizationManager.isActualTransactionActive()) {
+            for (Runnable check : checks) {
+                check.run();
+            }
+            return;
+        }
+        Future<?>[] offloaded = new Future<?>[checks.length];
+        for (int i = 1; i < checks.length && OFFLOAD_PERMITS.tryAcquire(); i++) {
+            FutureTask<Void> task = new FutureTask<>(JdbcQueryCounter.propagate(checks[i]), null) {
+                @Override
+                protected void done() {
+                    OFFLOAD_PERMITS.release();
+                }
+            };
+            EXECUTOR.execute(task);
+            offloaded[i] = task;
+        }
+        try {
+            for (int i = 0; i < checks.length; i++) {
+                if (offloaded[i] == null) {
+                    checks[i].run();
+                } else {
+                    offloaded[i].get();
+                }
+            }
+        } catch (ExecutionException e) {
+            cancel(offloaded);
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            cancel(offloaded);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание проверок прервано", e);
+        } catch (RuntimeException | Error e) {
+            cancel(offloaded);
+            throw e;
+        }
+    }
+
+    private static void cancel(Future<?>[] futures) {
+        for (Future<?> future : futures) {
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(cause);
+    }
+}
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.io.OutputStream;
+
+public interface ExportService {
+
+    void exportFilms(OutputStream output);
+
+    void exportUsers(OutputStream output);
+
+    void exportLikes(OutputStream output);
+
+    void exportFriendships(OutputStream output);
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.storage.ExportStorage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Выгрузка в NDJSON: каждая запись пишется отдельной строкой сразу после чтения из курсора,
+ * поэтому расход памяти не зависит от объема данных. Пустые поля не выводятся.
+ */
+@Slf4j
+@Service
+public class ExportServiceImpl implements ExportService {
+    private final ExportStorage exportStorage;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+
+    public ExportServiceImpl(ExportStorage exportStorage, ObjectMapper objectMapper) {
+        this.exportStorage = exportStorage;
+        this.objectMapper = objectMapper;
+        this.writer = objectMapper.copy().setSerializationInclusion(JsonInclude.Include.NON_NULL).writer();
+    }
+
+    @Override
+    public void exportFilms(OutputStream output) {
+        export("фильмов", output, exportStorage::exportFilms);
+    }
+
+    @Override
+    public void exportUsers(OutputStream output) {
+        export("пользователей", output, exportStorage::exportUsers);
+    }
+
+    @Override
+    public void exportLikes(OutputStream output) {
+        export("лайков", output, exportStorage::exportLikes);
+    }
+
+    @Override
+    public void exportFriendships(OutputStream output) {
+        export("друзей", output, exportStorage::exportFriendships);
+    }
+
+    private <T> void export(String entity, OutputStream output, Consumer<Consumer<T>> source) {
+        long start = System.nanoTime();
+        long[] records = {0};
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+            generator.setRootValueSeparator(null);
+            source.accept(record -> {
+                try {
+                    writer.writeValue(generator, record);
+                    generator.writeRaw('\n');
+                    records[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long durationMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        log.info("Экспорт {}: {} записей, {} мс, {} записей/с", entity, records[0], durationMs,
+                records[0] * 1000 / durationMs);
+    }
+}
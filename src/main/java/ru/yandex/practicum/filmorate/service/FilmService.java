@@ -2,12 +2,18 @@ package ru.yandex.practicum.filmorate.service;
 
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmProjection;
 
 import java.util.Collection;
+import java.util.function.Consumer;
 
 public interface FilmService {
 
-    Collection<FilmDto> findAll();
+    Collection<FilmDto> findAll(FilmProjection projection);
+
+    Collection<FilmDto> findPage(Integer afterId, Integer limit, FilmProjection projection);
+
+    void streamAll(Consumer<FilmDto> consumer);
 
     FilmDto findFilmById(Integer id);
 
@@ -19,5 +25,10 @@ public interface FilmService {
 
     void deleteLike(Integer filmId, Long userId);
 
-    Collection<FilmDto> getTopPopularFilms(int count);
+    Collection<FilmDto> getTopPopularFilms(int count, Integer genreId, Integer mpaId, Integer year,
+                                           FilmProjection projection);
+
+    Collection<Long> findLikes(Integer filmId, Long afterUserId, Integer limit);
+
+    Collection<FilmDto> getRecommendations(Long userId, int count, FilmProjection projection);
 }
@@ -8,8 +8,8 @@ import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.mapper.FilmMapper;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmProjection;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.RatingStorage;
@@ -18,21 +18,60 @@ import ru.yandex.practicum.filmorate.validation.FilmValidator;
 
 import java.util.Collection;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class FilmServiceImpl implements FilmService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
     private final RatingStorage ratingStorage;
     private final GenreStorage genreStorage;
 
     @Override
-    public Collection<FilmDto> findAll() {
-        Collection<Film> allFilms = filmStorage.findAll();
-        return allFilms.stream().map(FilmMapper::modelToDto).toList();
+    public Collection<FilmDto> findAll(FilmProjection projection) {
+        Collection<Film> allFilms = projection == FilmProjection.SUMMARY ?
+                filmStorage.findAllSummaries() : filmStorage.findAll();
+        return allFilms.stream().map(film -> FilmMapper.modelToDto(film, projection)).toList();
+    }
+
+    @Override
+    public Collection<FilmDto> findPage(Integer afterId, Integer limit, FilmProjection projection) {
+        int pageSize = validatePageSize(limit);
+        int after = Objects.isNull(afterId) ? 0 : afterId;
+        Collection<Film> page = projection == FilmProjection.SUMMARY ?
+                filmStorage.findSummaryPage(after, pageSize) : filmStorage.findPage(after, pageSize);
+        return page.stream()
+                .map(film -> FilmMapper.modelToDto(film, projection))
+                .toList();
+    }
+
+    @Override
+    public Collection<Long> findLikes(Integer filmId, Long afterUserId, Integer limit) {
+        int pageSize = validatePageSize(limit);
+        checkFilmExists(filmId);
+        return filmStorage.findLikes(filmId, Objects.isNull(afterUserId) ? 0 : afterUserId, pageSize);
+    }
+
+    private int validatePageSize(Integer limit) {
+        int pageSize = Objects.isNull(limit) ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            String validationViolation =
+                    String.format("Размер страницы должен быть от 1 до %d, передано %d", MAX_PAGE_SIZE, pageSize);
+            log.warn(validationViolation);
+            throw new ValidationException(validationViolation);
+        }
+        return pageSize;
+    }
+
+    @Override
+    public void streamAll(Consumer<FilmDto> consumer) {
+        filmStorage.streamAll(film -> consumer.accept(FilmMapper.modelToDto(film)));
     }
 
     @Override
@@ -50,10 +89,8 @@ public class FilmServiceImpl implements FilmService {
                 () -> new ValidationException(String.format("Рейтинг фильма с id = %d не найден", ratingId)));
         Collection<Genre> genres = newFilm.getGenres();
         if (!Objects.isNull(genres)) {
-            Collection<Integer> genresIdsDict =
-                    genreStorage.findAll().stream().map(Genre::getId).collect(Collectors.toSet());
             for (Genre genre : genres) {
-                if (!genresIdsDict.contains(genre.getId())) {
+                if (genreStorage.findGenreById(genre.getId()).isEmpty()) {
                     throw new ValidationException(String.format("Жанр фильма с id = %d не найден", genre.getId()));
                 }
             }
@@ -81,32 +118,58 @@ public class FilmServiceImpl implements FilmService {
 
     @Override
     public void addLike(Integer filmId, Long userId) {
-        Film film = filmStorage.findFilmById(filmId)
-                .orElseThrow(() -> new NotFoundException(String.format("Фильм с id = %d не найден", filmId)));
-        User user = userStorage.findUserById(userId)
-                .orElseThrow(() -> new NotFoundException(String.format("Пользователь с id = %d не найден", userId)));
+        ConcurrentChecks.runAll(() -> checkFilmExists(filmId), () -> checkUserExists(userId));
         filmStorage.addLike(filmId, userId);
         log.info("Добавлен лайк пользователя c id = {} к фильму с filmId = {}", userId, filmId);
     }
 
     @Override
     public void deleteLike(Integer filmId, Long userId) {
-        Film film = filmStorage.findFilmById(filmId)
-                .orElseThrow(() -> new NotFoundException(String.format("Фильм с id = %d не найден", filmId)));
-        User user = userStorage.findUserById(userId)
-                .orElseThrow(() -> new NotFoundException(String.format("Пользователь с id = %d не найден", userId)));
+        ConcurrentChecks.runAll(() -> checkFilmExists(filmId), () -> checkUserExists(userId));
         filmStorage.deleteLike(filmId, userId);
         log.info("Удален лайк пользователя c id = {} к фильму с filmId = {}", userId, filmId);
     }
 
+    private void checkFilmExists(Integer filmId) {
+        if (!filmStorage.existsById(filmId)) {
+            throw new NotFoundException(String.format("Фильм с id = %d не найден", filmId));
+        }
+    }
+
+    private void checkUserExists(Long userId) {
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException(String.format("Пользователь с id = %d не найден", userId));
+        }
+    }
+
     @Override
-    public Collection<FilmDto> getTopPopularFilms(int count) {
-        Collection<FilmDto> topPopularFilms = filmStorage.findAll().stream()
-                .map(FilmMapper::modelToDto)
-                .sorted((f1, f2) -> Long.compare(f2.getUserLikes().size(), f1.getUserLikes().size()))
-                .limit(count)
+    public Collection<FilmDto> getTopPopularFilms(int count, Integer genreId, Integer mpaId, Integer year,
+                                                  FilmProjection projection) {
+        Collection<Film> films = projection == FilmProjection.SUMMARY ?
+                filmStorage.findTopPopularFilmSummaries(count, genreId, mpaId, year) :
+                filmStorage.findTopPopularFilms(count, genreId, mpaId, year);
+        Collection<FilmDto> topPopularFilms = films.stream()
+                .map(film -> FilmMapper.modelToDto(film, projection))
                 .collect(Collectors.toList());
         log.debug("Список {} наиболее популярных фильмов для вывода: {}", count, topPopularFilms);
         return topPopularFilms;
     }
+
+    @Override
+    public Collection<FilmDto> getRecommendations(Long userId, int count, FilmProjection projection) {
+        if (count <= 0 || count > MAX_PAGE_SIZE) {
+            String validationViolation =
+                    String.format("Число рекомендаций должно быть от 1 до %d, передано %d", MAX_PAGE_SIZE, count);
+            log.warn(validationViolation);
+            throw new ValidationException(validationViolation);
+        }
+        checkUserExists(userId);
+        Collection<Film> films = projection == FilmProjection.SUMMARY ?
+                filmStorage.findRecommendedFilmSummaries(userId, count) :
+                filmStorage.findRecommendedFilms(userId, count);
+        log.debug("Рекомендовано пользователю с id = {} фильмов: {}", userId, films.size());
+        return films.stream()
+                .map(film -> FilmMapper.modelToDto(film, projection))
+                .toList();
+    }
 }
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.dto.ImportResultDto;
+
+import java.io.InputStream;
+
+public interface ImportService {
+
+    ImportResultDto importFilms(InputStream input);
+
+    ImportResultDto importUsers(InputStream input);
+
+    ImportResultDto importLikes(InputStream input);
+
+    ImportResultDto importFriendships(InputStream input);
+}
@@ -0,0 +1,301 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dto.ImportErrorDto;
+import ru.yandex.practicum.filmorate.dto.ImportResultDto;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.ImportStorage;
+import ru.yandex.practicum.filmorate.storage.RatingStorage;
+import ru.yandex.practicum.filmorate.validation.FilmValidator;
+import ru.yandex.practicum.filmorate.validation.UserValidator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Массовый импорт из NDJSON, где каждая строка - отдельная запись. Строки читаются и проверяются по одной,
+ * корректные записи копятся в пачку размером chunk-size, которая пишется пакетными запросами в своей
+ * транзакции. Ошибка разбора или проверки относится к строке и не прерывает импорт, а если пачку не удалось
+ * записать, ошибкой помечаются все ее строки. В ответе возвращается не больше MAX_REPORTED_ERRORS ошибок
+ * и MAX_REPORTED_IDS id созданных записей, поэтому размер ответа не растет вместе с объемом импорта.
+ * Импорт пишет напрямую в БД, поэтому доступен, только если фильмы и пользователи тоже хранятся в БД.
+ */
+@Slf4j
+@Service
+public class ImportServiceImpl implements ImportService {
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int MAX_REPORTED_IDS = 1000;
+    private static final String DB_STORAGE = "db";
+
+    private final ImportStorage importStorage;
+    private final RatingStorage ratingStorage;
+    private final GenreStorage genreStorage;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final boolean filmsInDb;
+    private final boolean usersInDb;
+
+    public ImportServiceImpl(ImportStorage importStorage, RatingStorage ratingStorage, GenreStorage genreStorage,
+                             ObjectMapper objectMapper, TransactionTemplate transactionTemplate,
+                             @Value("${filmorate.import.chunk-size:1000}") int chunkSize,
+                             @Value("${filmorate.films.storage:db}") String filmsStorage,
+                             @Value("${filmorate.users.storage:db}") String usersStorage) {
+        this.importStorage = importStorage;
+        this.ratingStorage = ratingStorage;
+        this.genreStorage = genreStorage;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.filmsInDb = DB_STORAGE.equals(filmsStorage);
+        this.usersInDb = DB_STORAGE.equals(usersStorage);
+    }
+
+    @Override
+    public ImportResultDto importFilms(InputStream input) {
+        requireDbStorage(filmsInDb);
+        return importRecords("фильмов", input, Film.class, this::validateFilm,
+                chunk -> new ChunkOutcome(List.of(), importStorage.importFilms(values(chunk))));
+    }
+
+    @Override
+    public ImportResultDto importUsers(InputStream input) {
+        requireDbStorage(usersInDb);
+        return importRecords("пользователей", input, User.class, this::validateUser,
+                chunk -> new ChunkOutcome(List.of(), importStorage.importUsers(values(chunk))));
+    }
+
+    @Override
+    public ImportResultDto importLikes(InputStream input) {
+        requireDbStorage(filmsInDb && usersInDb);
+        return importRecords("лайков", input, Like.class, this::validateLike, chunk -> {
+            Set<Integer> films = importStorage.findExistingFilmIds(
+                    chunk.stream().map(record -> record.value().filmId()).distinct().toList());
+            Set<Long> users = importStorage.findExistingUserIds(
+                    chunk.stream().map(record -> record.value().userId()).distinct().toList());
+            List<ImportErrorDto> errors = new ArrayList<>();
+            List<Like> likes = new ArrayList<>(chunk.size());
+            for (ImportRecord<Like> record : chunk) {
+                Like like = record.value();
+                if (!films.contains(like.filmId())) {
+                    errors.add(error(record.line(), String.format("Фильм с id = %d не найден", like.filmId())));
+                } else if (!users.contains(like.userId())) {
+                    errors.add(error(record.line(),
+                            String.format("Пользователь с id = %d не найден", like.userId())));
+                } else {
+                    likes.add(like);
+                }
+            }
+            importStorage.importLikes(likes);
+            return new ChunkOutcome(errors, null);
+        });
+    }
+
+    @Override
+    public ImportResultDto importFriendships(InputStream input) {
+        requireDbStorage(usersInDb);
+        return importRecords("друзей", input, Friendship.class, this::validateFriendship, chunk -> {
+            Set<Long> users = importStorage.findExistingUserIds(chunk.stream()
+                    .flatMap(record -> List.of(record.value().userId(), record.value().friendId()).stream())
+                    .distinct()
+                    .toList());
+            List<ImportErrorDto> errors = new ArrayList<>();
+            List<Friendship> friendships = new ArrayList<>(chunk.size());
+            for (ImportRecord<Friendship> record : chunk) {
+                Friendship friendship = record.value();
+                if (!users.contains(friendship.userId())) {
+                    errors.add(error(record.line(),
+                            String.format("Пользователь с id = %d не найден", friendship.userId())));
+                } else if (!users.contains(friendship.friendId())) {
+                    errors.add(error(record.line(), String.format(
+                            "Пользователь для добавления в друзья с id = %d не найден", friendship.friendId())));
+                } else {
+                    friendships.add(friendship);
+                }
+            }
+            importStorage.importFriendships(friendships);
+            return new ChunkOutcome(errors, null);
+        });
+    }
+
+    private <T> ImportResultDto importRecords(String entity, InputStream input, Class<T> type,
+                                              Consumer<T> validator,
+                                              Function<List<ImportRecord<T>>, ChunkOutcome> writer) {
+        ImportReport report = new ImportReport();
+        List<ImportRecord<T>> chunk = new ArrayList<>(chunkSize);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            long lineNumber = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    T value = objectMapper.readValue(line, type);
+                    validator.accept(value);
+                    chunk.add(new ImportRecord<>(lineNumber, value));
+                } catch (JsonProcessingException e) {
+                    report.fail(error(lineNumber, "Некорректная запись: " + e.getOriginalMessage()));
+                } catch (ValidationException | NotFoundException e) {
+                    report.fail(error(lineNumber, e.getMessage()));
+                }
+                if (chunk.size() == chunkSize) {
+                    writeChunk(chunk, writer, report);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать данные для импорта", e);
+        }
+        writeChunk(chunk, writer, report);
+        ImportResultDto result = report.toDto();
+        log.info("Импорт {}: записано {}, с ошибками {}, {} мс, {} записей/с", entity, result.getImported(),
+                result.getFailed(), result.getDurationMs(), result.getRecordsPerSecond());
+        return result;
+    }
+
+    private <T> void writeChunk(List<ImportRecord<T>> chunk, Function<List<ImportRecord<T>>, ChunkOutcome> writer,
+                                ImportReport report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        ChunkOutcome outcome;
+        try {
+            outcome = transactionTemplate.execute(status -> writer.apply(chunk));
+        } catch (DataAccessException e) {
+            String message = "Пачка не записана: " + e.getMostSpecificCause().getMessage();
+            log.warn("Пачка импорта со строк {}-{} не записана", chunk.getFirst().line(), chunk.getLast().line(), e);
+            chunk.forEach(record -> report.fail(error(record.line(), message)));
+            return;
+        }
+        outcome.errors().forEach(report::fail);
+        report.imported(chunk.size() - outcome.errors().size());
+        if (!Objects.isNull(outcome.createdIds())) {
+            report.created(outcome.createdIds());
+        }
+    }
+
+    private static void requireDbStorage(boolean inDb) {
+        if (!inDb) {
+            throw new ValidationException("Импорт доступен, только если фильмы и пользователи хранятся в БД");
+        }
+    }
+
+    private void validateFilm(Film film) {
+        FilmValidator.validateNull(film);
+        FilmValidator.validateFormat(film);
+        if (Objects.isNull(film.getMpa())) {
+            throw new ValidationException("Рейтинг фильма не может быть пустым");
+        }
+        Integer ratingId = film.getMpa().getId();
+        ratingStorage.findRatingById(ratingId).orElseThrow(
+                () -> new ValidationException(String.format("Рейтинг фильма с id = %d не найден", ratingId)));
+        if (!Objects.isNull(film.getGenres())) {
+            for (Genre genre : film.getGenres()) {
+                if (genreStorage.findGenreById(genre.getId()).isEmpty()) {
+                    throw new ValidationException(String.format("Жанр фильма с id = %d не найден", genre.getId()));
+                }
+            }
+        }
+    }
+
+    private void validateUser(User user) {
+        UserValidator.validateNull(user);
+        UserValidator.validateFormat(user);
+        if (Objects.isNull(user.getName()) || user.getName().isBlank()) {
+            user.setName(user.getLogin());
+        }
+    }
+
+    private void validateLike(Like like) {
+        if (Objects.isNull(like.filmId()) || Objects.isNull(like.userId())) {
+            throw new ValidationException("Для лайка должны быть указаны filmId и userId");
+        }
+    }
+
+    private void validateFriendship(Friendship friendship) {
+        if (Objects.isNull(friendship.userId()) || Objects.isNull(friendship.friendId())) {
+            throw new ValidationException("Для дружбы должны быть указаны userId и friendId");
+        }
+        if (friendship.userId().equals(friendship.friendId())) {
+            throw new ValidationException(String.format(
+                    "Пользователь не может добавить себя в друзья. Для id пользователя и id друга передано " +
+                            "одинаковое значение %d", friendship.userId()));
+        }
+    }
+
+    private static <T> List<T> values(List<ImportRecord<T>> chunk) {
+        return chunk.stream().map(ImportRecord::value).toList();
+    }
+
+    private static ImportErrorDto error(long line, String message) {
+        return ImportErrorDto.builder().line(line).error(message).build();
+    }
+
+    private record ImportRecord<T>(long line, T value) {
+    }
+
+    private record ChunkOutcome(List<ImportErrorDto> errors, List<? extends Number> createdIds) {
+    }
+
+    private static class ImportReport {
+        private final long startNanos = System.nanoTime();
+        private final List<ImportErrorDto> errors = new ArrayList<>();
+        private final List<Number> createdIds = new ArrayList<>();
+        private long imported;
+        private long failed;
+
+        void imported(long count) {
+            imported += count;
+        }
+
+        void fail(ImportErrorDto error) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+            }
+        }
+
+        void created(List<? extends Number> ids) {
+            int remaining = MAX_REPORTED_IDS - createdIds.size();
+            if (remaining > 0) {
+                createdIds.addAll(ids.subList(0, Math.min(remaining, ids.size())));
+            }
+        }
+
+        ImportResultDto toDto() {
+            long durationMs = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+            return ImportResultDto.builder()
+                    .imported(imported)
+                    .failed(failed)
+                    .createdIds(createdIds)
+                    .errors(errors)
+                    .durationMs(durationMs)
+                    .recordsPerSecond((imported + failed) * 1000 / durationMs)
+                    .build();
+        }
+    }
+}
@@ -19,7 +19,9 @@ public interface UserService {
 
     void deleteFriend(Long userId, Long friendId);
 
-    Collection<UserDto> getUserFriends(Long userId);
+    Collection<UserDto> getUserFriends(Long userId, Long afterFriendId, Integer limit, boolean withFriendIds);
 
     Collection<UserDto> getCommonFriends(Long userId, Long otherId);
+
+    Collection<UserDto> getFriendSuggestions(Long userId, int count);
 }
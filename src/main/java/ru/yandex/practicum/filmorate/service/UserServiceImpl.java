@@ -20,6 +20,9 @@ import java.util.stream.Collectors;
 @Slf4j
 @RequiredArgsConstructor
 public class UserServiceImpl implements UserService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final UserStorage userStorage;
 
     @Override
@@ -37,17 +40,8 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public void addFriend(Long userId, Long friendId) {
-        User user = userStorage.findUserById(userId)
-                .orElseThrow(() -> new NotFoundException(String.format("Пользователь с id = %d не найден", userId)));
-        User friend = userStorage.findUserById(friendId).orElseThrow(() -> new NotFoundException(
-                String.format("Пользователь для добавления в друзья с id = %d не найден", friendId)));
-        if (userStorage.getFriendsByUserId(userId).contains(friendId)) {
-            String friendshipExists =
-                    String.format("Пользователь с id = %d уже является другом пользователя c id = %d", userId,
-                            friendId);
-            log.warn(friendshipExists);
-            throw new ValidationException(friendshipExists);
-        }
+        ConcurrentChecks.runAll(() -> checkUserExists(userId, "Пользователь с id = %d не найден"),
+                () -> checkUserExists(friendId, "Пользователь для добавления в друзья с id = %d не найден"));
         if (userId.equals(friendId)) {
             String equalIds = String.format(
                     "Пользователь не может добавить себя в друзья. Для id пользователя и id друга передано одинаковое значение %d",
@@ -61,10 +55,8 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public void deleteFriend(Long userId, Long friendId) {
-        User user = userStorage.findUserById(userId)
-                .orElseThrow(() -> new NotFoundException(String.format("Пользователь с id = %d не найден", userId)));
-        User friend = userStorage.findUserById(friendId).orElseThrow(() -> new NotFoundException(
-                String.format("Пользователь для удаление из друзей с id = %d не найден", friendId)));
+        ConcurrentChecks.runAll(() -> checkUserExists(userId, "Пользователь с id = %d не найден"),
+                () -> checkUserExists(friendId, "Пользователь для удаление из друзей с id = %d не найден"));
         if (userId.equals(friendId)) {
             String equalIds = String.format(
                     "Пользователь не может добавить себя в друзья. Для id пользователя и id друга передано одинаковое значение %d",
@@ -72,28 +64,39 @@ public class UserServiceImpl implements UserService {
             log.warn(equalIds);
             throw new ValidationException(equalIds);
         }
-        if (userStorage.deleteFriend(user.getId(), friend.getId())) {
+        if (userStorage.deleteFriend(userId, friendId)) {
             log.info("Пользователь c friendId = {} удален из списка друзей пользователя с id = {}", friendId, userId);
         }
     }
 
     @Override
-    public Collection<UserDto> getUserFriends(Long userId) {
-        User user = userStorage.findUserById(userId)
-                .orElseThrow(() -> new NotFoundException(String.format("Пользователь с id = %d не найден", userId)));
-        Collection<UserDto> userFriends =
-                userStorage.getFriendsByUserId(userId).stream().map(UserMapper::modelToDto).collect(
-                        Collectors.toSet());
+    public Collection<UserDto> getUserFriends(Long userId, Long afterFriendId, Integer limit,
+                                              boolean withFriendIds) {
+        int pageSize;
+        if (Objects.isNull(afterFriendId) && Objects.isNull(limit)) {
+            pageSize = Integer.MAX_VALUE;
+        } else {
+            pageSize = Objects.isNull(limit) ? DEFAULT_PAGE_SIZE : limit;
+            if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+                String validationViolation = String.format("Размер страницы должен быть от 1 до %d, передано %d",
+                        MAX_PAGE_SIZE, pageSize);
+                log.warn(validationViolation);
+                throw new ValidationException(validationViolation);
+            }
+        }
+        checkUserExists(userId, "Пользователь с id = %d не найден");
+        Collection<UserDto> userFriends = userStorage.getFriendsByUserId(userId,
+                        Objects.isNull(afterFriendId) ? 0 : afterFriendId, pageSize, withFriendIds).stream()
+                .map(withFriendIds ? UserMapper::modelToDto : UserMapper::modelToSummaryDto)
+                .toList();
         log.debug("Список друзей пользователя {} для вывода: {}", userId, userFriends);
         return userFriends;
     }
 
     @Override
     public Collection<UserDto> getCommonFriends(Long userId, Long otherId) {
-        User user = userStorage.findUserById(userId)
-                .orElseThrow(() -> new NotFoundException(String.format("Пользователь с id = %d не найден", userId)));
-        User other = userStorage.findUserById(otherId)
-                .orElseThrow(() -> new NotFoundException(String.format("Пользователь с id = %d не найден", otherId)));
+        ConcurrentChecks.runAll(() -> checkUserExists(userId, "Пользователь с id = %d не найден"),
+                () -> checkUserExists(otherId, "Пользователь с id = %d не найден"));
         Collection<UserDto> commonFriends = userStorage.getCommonFriends(userId, otherId).stream()
                 .map(UserMapper::modelToDto)
                 .collect(Collectors.toList());
@@ -101,6 +104,28 @@ public class UserServiceImpl implements UserService {
         return commonFriends;
     }
 
+    @Override
+    public Collection<UserDto> getFriendSuggestions(Long userId, int count) {
+        if (count <= 0 || count > MAX_PAGE_SIZE) {
+            String validationViolation =
+                    String.format("Число предложений должно быть от 1 до %d, передано %d", MAX_PAGE_SIZE, count);
+            log.warn(validationViolation);
+            throw new ValidationException(validationViolation);
+        }
+        checkUserExists(userId, "Пользователь с id = %d не найден");
+        Collection<UserDto> suggestions = userStorage.getFriendSuggestions(userId, count).stream()
+                .map(UserMapper::modelToSummaryDto)
+                .toList();
+        log.debug("Предложения друзей для пользователя {}: {}", userId, suggestions);
+        return suggestions;
+    }
+
+    private void checkUserExists(Long userId, String notFoundMessage) {
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException(String.format(notFoundMessage, userId));
+        }
+    }
+
     @Override
     public UserDto create(User newUser) {
         return UserMapper.modelToDto(userStorage.create(newUser));
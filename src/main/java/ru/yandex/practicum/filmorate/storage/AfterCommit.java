@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@UtilityClass
+final class AfterCommit {
+    /**
+     * Выполняет action после коммита текущей транзакции, а вне транзакции - сразу. При откате action
+     * не выполняется, поэтому структуры в памяти не расходятся с БД.
+     */
+    static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.experimental.UtilityClass;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@UtilityClass
+final class CacheInvalidation {
+    /**
+     * Удаляет запись из кэша сразу и повторно по завершении текущей транзакции, чтобы в кэше не осталось
+     * значение, которое параллельный запрос прочитал до коммита. Вызывается после записи в БД: без транзакции
+     * запись к этому моменту уже закоммичена, и старое значение больше не может попасть в кэш.
+     */
+    static <K> void invalidate(Cache<K, ?> cache, K key) {
+        cache.invalidate(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(key);
+                }
+            });
+        }
+    }
+}
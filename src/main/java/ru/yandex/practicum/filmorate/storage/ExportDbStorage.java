@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmMerger;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+@Repository
+public class ExportDbStorage implements ExportStorage {
+    private final JdbcTemplate jdbc;
+    private final UserRowMapper userRowMapper;
+    private final FilmMerger filmMerger;
+    private final int fetchSize;
+
+    public ExportDbStorage(JdbcTemplate jdbc, UserRowMapper userRowMapper, FilmMerger filmMerger,
+                           @Value("${filmorate.export.fetch-size:1000}") int fetchSize) {
+        this.jdbc = jdbc;
+        this.userRowMapper = userRowMapper;
+        this.filmMerger = filmMerger;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Фильмы собираются тем же FilmMerger, что и в FilmDbStorage, из двух курсоров: фильмов и жанров.
+     * Число лайков не выводится, потому что лайки выгружаются отдельно.
+     */
+    @Override
+    public void exportFilms(Consumer<Film> consumer) {
+        jdbc.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement films = prepare(connection, "SELECT * FROM film ORDER BY id");
+                 PreparedStatement genres = prepare(connection,
+                         "SELECT film_id, genre_id FROM film_genre ORDER BY film_id, genre_id");
+                 ResultSet filmRows = films.executeQuery();
+                 ResultSet genreRows = genres.executeQuery()) {
+                filmMerger.merge(filmRows, genreRows, null, film -> {
+                    film.setLikeCount(null);
+                    consumer.accept(film);
+                });
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void exportUsers(Consumer<User> consumer) {
+        stream("SELECT * FROM users ORDER BY id", rs -> consumer.accept(userRowMapper.mapRow(rs, rs.getRow())));
+    }
+
+    @Override
+    public void exportLikes(Consumer<Like> consumer) {
+        stream("SELECT film_id, user_id FROM film_userlikes ORDER BY film_id, user_id",
+                rs -> consumer.accept(new Like(rs.getInt("film_id"), rs.getLong("user_id"))));
+    }
+
+    @Override
+    public void exportFriendships(Consumer<Friendship> consumer) {
+        stream("SELECT user_id, user_friend_id FROM user_friends ORDER BY user_id, user_friend_id",
+                rs -> consumer.accept(new Friendship(rs.getLong("user_id"), rs.getLong("user_friend_id"))));
+    }
+
+    private void stream(String query, RowCallbackHandler handler) {
+        jdbc.query(connection -> prepare(connection, query), handler);
+    }
+
+    private PreparedStatement prepare(Connection connection, String query) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(fetchSize);
+        return ps;
+    }
+}
@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.function.Consumer;
+
+/**
+ * Потоковая выгрузка всех данных: записи передаются потребителю по мере чтения курсора и не копятся в памяти.
+ * Фильмы выгружаются с жанрами, но без лайков, а пользователи без друзей: связи выгружаются отдельно.
+ */
+public interface ExportStorage {
+    void exportFilms(Consumer<Film> consumer);
+
+    void exportUsers(Consumer<User> consumer);
+
+    void exportLikes(Consumer<Like> consumer);
+
+    void exportFriendships(Consumer<Friendship> consumer);
+}
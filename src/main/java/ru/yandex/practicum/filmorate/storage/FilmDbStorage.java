@@ -1,74 +1,204 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.storage.mappers.FilmExtractor;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmMerger;
 import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
-import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Repository
 @Primary
+@ConditionalOnProperty(name = "filmorate.films.storage", havingValue = "db", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class FilmDbStorage implements FilmStorage {
+    private static final int STREAM_FETCH_SIZE = 500;
+    private static final String FILMS_WHERE = "SELECT * FROM film WHERE %s ORDER BY id";
+    private static final String GENRES_WHERE =
+            "SELECT film_id, genre_id FROM film_genre WHERE %s ORDER BY film_id, genre_id";
+    private static final String LIKES_WHERE =
+            "SELECT film_id, user_id FROM film_userlikes WHERE %s ORDER BY film_id, user_id";
+    private static final String ID_RANGE = "%1$s > ? AND %1$s <= ?";
+    private static final String ID_IN = "%s = ANY(?)";
+    private static final String FILMS_BY_IDS =
+            "SELECT f.*, " +
+                    "ARRAY(SELECT fg.genre_id FROM film_genre fg WHERE fg.film_id = f.id) as genre_ids, " +
+                    "ARRAY(SELECT fu.user_id FROM film_userlikes fu WHERE fu.film_id = f.id) as user_likes " +
+                    "FROM film f WHERE f.id = ANY(?)";
+
     private final JdbcTemplate jdbc;
     private final FilmRowMapper filmRowMapper;
-    private final GenreRowMapper genreRowMapper;
-    private final FilmExtractor filmExtractor;
+    private final FilmMerger filmMerger;
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmRecommendationIndex recommendationIndex;
+    private final LikeWriteBehindQueue likeQueue;
+    private final Cache<Integer, Film> filmCache;
 
-    private Set<Genre> findFilmGenresIdsByFilmId(Integer filmId) {
-        return new HashSet<>(jdbc.query("SELECT g.* FROM film_genre fg, genre g " +
-                "WHERE fg.genre_id = g.id AND fg.film_id = ? ", genreRowMapper, filmId));
+    @Override
+    public Collection<Film> findAll() {
+        List<Film> films = new ArrayList<>();
+        merge(ID_RANGE, true, 0, films::add, 0, Integer.MAX_VALUE);
+        return films;
     }
 
-    private Set<Long> findFilmLikesByFilmId(Integer filmId) {
-        return new HashSet<>(jdbc.queryForList("SELECT fu.user_id FROM film_userlikes fu " +
-                "WHERE fu.film_id = ? ", Long.class, filmId));
+    @Override
+    public Collection<Film> findPage(int afterId, int limit) {
+        return findPage(afterId, limit, true);
     }
 
     @Override
-    public Collection<Film> findAll() {
-        String query =
-                "SELECT f.*, r.name as rating_name, fg.genre_id, g.name as genre_name, fu.user_id FROM film f " +
-                        "JOIN rating r ON f.rating_id = r.id " +
-                        "JOIN film_genre fg ON fg.film_id = f.id " +
-                        "JOIN genre g ON g.id = fg.genre_id " +
-                        "LEFT JOIN film_userlikes fu ON f.id = fu.film_id ";
-        return jdbc.query(query, filmExtractor);
+    public void streamAll(Consumer<Film> consumer) {
+        merge(ID_RANGE, true, STREAM_FETCH_SIZE, consumer, 0, Integer.MAX_VALUE);
     }
 
     @Override
-    public void addLike(Integer filmId, Long userId) {
-        String sqlQuery = "MERGE INTO film_userlikes (film_id, user_id) KEY (film_id, user_id) VALUES (?, ?)";
-        int rowsMerged = jdbc.update(sqlQuery, filmId, userId);
-        if (rowsMerged > 0) {
-            log.info("Лайк к фильму с id = {} от пользователя с id = {} добавлен", filmId, userId);
+    public Collection<Film> findAllSummaries() {
+        List<Film> films = new ArrayList<>();
+        merge(ID_RANGE, false, 0, films::add, 0, Integer.MAX_VALUE);
+        return films;
+    }
+
+    @Override
+    public Collection<Film> findSummaryPage(int afterId, int limit) {
+        return findPage(afterId, limit, false);
+    }
+
+    @Override
+    public Collection<Film> findTopPopularFilmSummaries(int count, Integer genreId, Integer ratingId, Integer year) {
+        return findTopPopular(count, genreId, ratingId, year, this::findSummariesByIds);
+    }
+
+    @Override
+    public Collection<Film> findRecommendedFilms(Long userId, int count) {
+        return findFilmsByIds(recommendationIndex.recommendFilmIds(userId, count));
+    }
+
+    @Override
+    public Collection<Film> findRecommendedFilmSummaries(Long userId, int count) {
+        return findSummariesByIds(recommendationIndex.recommendFilmIds(userId, count));
+    }
+
+    private Collection<Film> findSummariesByIds(List<Integer> filmIds) {
+        if (filmIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, Film> filmsById = new HashMap<>();
+        merge(ID_IN, false, 0, film -> filmsById.put(film.getId(), film), (Object) filmIds.toArray(new Integer[0]));
+        return filmIds.stream().map(filmsById::get).filter(Objects::nonNull).toList();
+    }
+
+    @Override
+    public Collection<Long> findLikes(Integer filmId, long afterUserId, int limit) {
+        return jdbc.queryForList("SELECT user_id FROM film_userlikes WHERE film_id = ? AND user_id > ? " +
+                "ORDER BY user_id LIMIT ?", Long.class, filmId, afterUserId, limit);
+    }
+
+    private Collection<Film> findPage(int afterId, int limit, boolean withLikes) {
+        Integer lastId = jdbc.queryForObject(
+                "SELECT MAX(id) FROM (SELECT id FROM film WHERE id > ? ORDER BY id LIMIT ?)", Integer.class,
+                afterId, limit);
+        if (Objects.isNull(lastId)) {
+            return List.of();
         }
+        List<Film> page = new ArrayList<>(limit);
+        merge(ID_RANGE, withLikes, 0, page::add, afterId, lastId);
+        return page;
+    }
+
+    /**
+     * Читает фильмы, жанры и, если нужно, лайки отдельными запросами на одном соединении и сливает их по id фильма.
+     * Условие idFilter подставляется для колонки id фильма каждой таблицы, поэтому каждый запрос идет по индексу
+     * с ведущей колонкой id фильма.
+     */
+    private void merge(String idFilter, boolean withLikes, int fetchSize, Consumer<Film> consumer, Object... args) {
+        jdbc.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement films = prepare(connection, FILMS_WHERE, idFilter, "id", fetchSize, args);
+                 PreparedStatement genres = prepare(connection, GENRES_WHERE, idFilter, "film_id", fetchSize, args);
+                 PreparedStatement likes = withLikes ?
+                         prepare(connection, LIKES_WHERE, idFilter, "film_id", fetchSize, args) : null;
+                 ResultSet filmRows = films.executeQuery();
+                 ResultSet genreRows = genres.executeQuery();
+                 ResultSet likeRows = withLikes ? likes.executeQuery() : null) {
+                filmMerger.merge(filmRows, genreRows, likeRows, consumer);
+            }
+            return null;
+        });
+    }
+
+    private static PreparedStatement prepare(Connection connection, String query, String idFilter, String idColumn,
+                                             int fetchSize, Object[] args) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement(String.format(query, String.format(idFilter, idColumn)));
+        new ArgumentPreparedStatementSetter(args).setValues(ps);
+        ps.setFetchSize(fetchSize);
+        return ps;
+    }
+
+    @Override
+    public boolean existsById(Integer id) {
+        return Boolean.TRUE.equals(
+                jdbc.queryForObject("SELECT EXISTS(SELECT 1 FROM film WHERE id = ?)", Boolean.class, id));
+    }
+
+    @Override
+    public void addLike(Integer filmId, Long userId) {
+        likeQueue.submit(new LikeMutation(filmId, userId, true));
     }
 
     @Override
     public void deleteLike(Integer filmId, Long userId) {
-        String query = "DELETE FROM film_userlikes WHERE film_id = ? AND user_id = ? ";
-        int rowsDeleted = jdbc.update(query, filmId, userId);
-        if (rowsDeleted > 0) {
-            log.info("Лайк к фильму с id = {} от пользователя с id = {} удален", filmId, userId);
+        likeQueue.submit(new LikeMutation(filmId, userId, false));
+    }
+
+    @Override
+    public Collection<Film> findTopPopularFilms(int count, Integer genreId, Integer ratingId, Integer year) {
+        return findTopPopular(count, genreId, ratingId, year, this::findFilmsByIds);
+    }
+
+    /**
+     * Фильмы попадают в рейтинг только после коммита, поэтому отмененные создания в нем не остаются. Id фильмов,
+     * которых все же нет в БД, удаляются из рейтинга, и выборка повторяется, чтобы вернуть count фильмов.
+     */
+    private Collection<Film> findTopPopular(int count, Integer genreId, Integer ratingId, Integer year,
+                                            Function<List<Integer>, Collection<Film>> loader) {
+        while (true) {
+            List<Integer> topFilmIds = popularityIndex.findTopFilmIds(count, genreId, ratingId, year);
+            if (topFilmIds.isEmpty()) {
+                return List.of();
+            }
+            Collection<Film> topPopularFilms = loader.apply(topFilmIds);
+            if (topPopularFilms.size() == topFilmIds.size()) {
+                return topPopularFilms;
+            }
+            Set<Integer> foundIds = topPopularFilms.stream().map(Film::getId).collect(Collectors.toSet());
+            topFilmIds.stream().filter(id -> !foundIds.contains(id)).forEach(popularityIndex::remove);
         }
     }
 
@@ -90,6 +220,7 @@ public class FilmDbStorage implements FilmStorage {
         Integer filmId = keyHolder.getKeyAs(Integer.class);
         updateFilmGenre(filmId, newFilm.getGenres());
         Film film = findFilmById(filmId).get();
+        AfterCommit.run(() -> popularityIndex.register(film));
         log.info("Фильм {} добавлен", film);
         return film;
     }
@@ -128,28 +259,51 @@ public class FilmDbStorage implements FilmStorage {
         if (!Objects.isNull(updFilm.getGenres())) {
             updateFilmGenre(updFilm.getId(), updFilm.getGenres());
         }
+        CacheInvalidation.invalidate(filmCache, updFilm.getId());
         if (rowsUpdated == 0) {
             throw new RuntimeException("Не удалось обновить данные");
         } else {
             log.info("Фильм с id = {} обновлен", updFilm.getId());
-            return findFilmById(updFilm.getId()).get();
+            Film film = findFilmById(updFilm.getId()).get();
+            AfterCommit.run(() -> popularityIndex.register(film));
+            return film;
         }
     }
 
     @Override
     public Optional<Film> findFilmById(Integer id) {
-        String query =
-                "SELECT f.*, r.name as rating_name FROM film f, rating r WHERE f.rating_id = r.id AND f.id = ? ";
-        List<Film> result = jdbc.query(query, filmRowMapper, id);
-        if (result.size() == 0) {
-            return Optional.empty();
+        return findFilmsByIds(List.of(id)).stream().findFirst();
+    }
+
+    /**
+     * Возвращает копии фильмов из кэша, а недостающие загружает вместе с жанрами и лайками одним запросом.
+     * Фильмы возвращаются в порядке переданных id, отсутствующие в базе id пропускаются.
+     */
+    @Override
+    public Collection<Film> findFilmsByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
         }
-        Film film = result.getFirst();
-        Set<Genre> genres = findFilmGenresIdsByFilmId(id);
-        film.setGenres(genres);
-        Set<Long> userLikes = findFilmLikesByFilmId(id);
-        film.setUserLikes(userLikes);
-        return Optional.of(film);
+        Map<Integer, Film> filmsById = filmCache.getAll(ids, this::loadFilmsByIds);
+        return ids.stream().distinct()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .map(FilmDbStorage::copy)
+                .toList();
     }
 
+    private Map<Integer, Film> loadFilmsByIds(Set<? extends Integer> ids) {
+        return jdbc.query(FILMS_BY_IDS, filmRowMapper, (Object) ids.toArray(new Integer[0])).stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+    }
+
+    /**
+     * Копия фильма из кэша, которую вызывающий может изменять, не затрагивая кэш.
+     */
+    private static Film copy(Film film) {
+        return film.toBuilder()
+                .genres(Objects.isNull(film.getGenres()) ? null : new LinkedHashSet<>(film.getGenres()))
+                .userLikes(Objects.isNull(film.getUserLikes()) ? null : film.getUserLikes().copy())
+                .build();
+    }
 }
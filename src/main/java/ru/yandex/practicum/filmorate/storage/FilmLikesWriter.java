@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Записывает пачку изменений лайков в film_userlikes пакетными запросами и в той же транзакции
+ * обновляет film.like_count на число реально добавленных или удаленных строк. Рейтинг популярности
+ * и индекс рекомендаций обновляются только после коммита, чтобы откат пачки их не затронул, а кэш фильмов
+ * сбрасывается после записи и повторно по завершении транзакции.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmLikesWriter {
+    private static final String INSERT_LIKE = "INSERT INTO film_userlikes (film_id, user_id) SELECT ?, ? " +
+            "WHERE NOT EXISTS (SELECT 1 FROM film_userlikes WHERE film_id = ? AND user_id = ?)";
+    private static final String DELETE_LIKE = "DELETE FROM film_userlikes WHERE film_id = ? AND user_id = ?";
+    private static final String UPDATE_LIKE_COUNT = "UPDATE film SET like_count = like_count + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbc;
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmRecommendationIndex recommendationIndex;
+    private final Cache<Integer, Film> filmCache;
+
+    @Transactional
+    public void apply(Collection<LikeMutation> mutations) {
+        List<LikeMutation> likes = mutations.stream().filter(LikeMutation::liked).toList();
+        List<LikeMutation> unlikes = mutations.stream().filter(mutation -> !mutation.liked()).toList();
+        Map<Integer, Integer> likeCountDeltas = new TreeMap<>();
+        List<LikeMutation> applied = new ArrayList<>(mutations.size());
+        int[] inserted = batchUpdate(INSERT_LIKE, likes, (ps, mutation) -> {
+            ps.setInt(1, mutation.filmId());
+            ps.setLong(2, mutation.userId());
+            ps.setInt(3, mutation.filmId());
+            ps.setLong(4, mutation.userId());
+        });
+        collectDeltas(likes, inserted, 1, likeCountDeltas, applied);
+        int[] deleted = batchUpdate(DELETE_LIKE, unlikes, (ps, mutation) -> {
+            ps.setInt(1, mutation.filmId());
+            ps.setLong(2, mutation.userId());
+        });
+        collectDeltas(unlikes, deleted, -1, likeCountDeltas, applied);
+        if (likeCountDeltas.isEmpty()) {
+            return;
+        }
+        List<Object[]> countUpdates = new ArrayList<>(likeCountDeltas.size());
+        likeCountDeltas.forEach((filmId, delta) -> countUpdates.add(new Object[]{delta, filmId}));
+        jdbc.batchUpdate(UPDATE_LIKE_COUNT, countUpdates);
+        log.debug("Применено изменений лайков: {}, затронуто фильмов: {}", applied.size(), likeCountDeltas.size());
+        likeCountDeltas.keySet().forEach(filmId -> CacheInvalidation.invalidate(filmCache, filmId));
+        AfterCommit.run(() -> {
+            likeCountDeltas.forEach(popularityIndex::adjust);
+            applied.forEach(mutation ->
+                    recommendationIndex.update(mutation.userId(), mutation.filmId(), mutation.liked()));
+        });
+    }
+
+    private int[] batchUpdate(String query, List<LikeMutation> mutations,
+                              ParameterizedPreparedStatementSetter<LikeMutation> setter) {
+        if (mutations.isEmpty()) {
+            return new int[0];
+        }
+        return jdbc.batchUpdate(query, mutations, mutations.size(), setter)[0];
+    }
+
+    private void collectDeltas(List<LikeMutation> mutations, int[] rowsAffected, int sign,
+                               Map<Integer, Integer> likeCountDeltas, List<LikeMutation> applied) {
+        for (int i = 0; i < rowsAffected.length; i++) {
+            if (rowsAffected[i] > 0) {
+                LikeMutation mutation = mutations.get(i);
+                likeCountDeltas.merge(mutation.filmId(), sign * rowsAffected[i], Integer::sum);
+                applied.add(mutation);
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Рейтинг фильмов по количеству лайков, который хранится в памяти и обновляется вместе с film.like_count.
+ * Загружается из БД при старте приложения, до первого изменения лайков: при ленивой загрузке лайк,
+ * закоммиченный во время чтения, потерялся бы или учелся дважды. Выдача top-K стоит O(K), обновление лайка -
+ * O(log N).
+ * Кроме общего рейтинга ведутся отдельные рейтинги по каждому жанру, рейтингу MPA и году выхода, поэтому
+ * top-K внутри одного среза тоже стоит O(K). При нескольких фильтрах обходится самый короткий из подходящих
+ * рейтингов, а остальные условия проверяются по атрибутам фильма.
+ * Доступ защищен {@link ReentrantLock}, а не synchronized, чтобы виртуальный поток не закреплялся
+ * за потоком-носителем. {@link InMemoryFilmStorage} ведет свой экземпляр без БД и обновляет его сам.
+ */
+@Slf4j
+@Component
+public class FilmPopularityIndex {
+    private static final Comparator<FilmScore> BY_POPULARITY = Comparator.comparingInt(FilmScore::likes).reversed()
+            .thenComparingInt(FilmScore::filmId);
+    private static final int[] NO_GENRES = new int[0];
+
+    private final JdbcTemplate jdbc;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Integer, FilmScore> scores = new HashMap<>();
+    private final Map<Integer, FilmFacets> facets = new HashMap<>();
+    private final TreeSet<FilmScore> ranking = new TreeSet<>(BY_POPULARITY);
+    private final Map<Integer, TreeSet<FilmScore>> rankingByGenre = new HashMap<>();
+    private final Map<Integer, TreeSet<FilmScore>> rankingByRating = new HashMap<>();
+    private final Map<Integer, TreeSet<FilmScore>> rankingByYear = new HashMap<>();
+
+    @Autowired
+    public FilmPopularityIndex(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Рейтинг без БД: пуст до первых вызовов register и adjust, load не вызывается.
+     */
+    FilmPopularityIndex() {
+        this(null);
+    }
+
+    public List<Integer> findTopFilmIds(int count) {
+        return findTopFilmIds(count, null, null, null);
+    }
+
+    /**
+     * Id самых популярных фильмов среди подходящих под все заданные фильтры. Фильтр null не ограничивает выдачу.
+     */
+    public List<Integer> findTopFilmIds(int count, Integer genreId, Integer ratingId, Integer year) {
+        lock.lock();
+        try {
+            NavigableSet<FilmScore> source = ranking;
+            source = shorter(source, genreId, rankingByGenre);
+            source = shorter(source, ratingId, rankingByRating);
+            source = shorter(source, year, rankingByYear);
+            List<Integer> filmIds = new ArrayList<>(Math.max(0, Math.min(count, source.size())));
+            Iterator<FilmScore> iterator = source.iterator();
+            while (filmIds.size() < count && iterator.hasNext()) {
+                FilmScore score = iterator.next();
+                if (matches(facets.get(score.filmId()), genreId, ratingId, year)) {
+                    filmIds.add(score.filmId());
+                }
+            }
+            return filmIds;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Добавляет новый фильм с нулевым рейтингом или обновляет жанры, рейтинг MPA и год выхода уже известного.
+     */
+    public void register(Film film) {
+        lock.lock();
+        try {
+            FilmScore score = scores.get(film.getId());
+            if (score != null) {
+                unlink(score);
+            }
+            facets.put(film.getId(), FilmFacets.of(film));
+            put(new FilmScore(film.getId(), score == null ? 0 : score.likes()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void adjust(int filmId, int delta) {
+        lock.lock();
+        try {
+            FilmScore score = scores.get(filmId);
+            if (score != null) {
+                unlink(score);
+            }
+            put(new FilmScore(filmId, Math.max(0, (score == null ? 0 : score.likes()) + delta)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void remove(int filmId) {
+        lock.lock();
+        try {
+            FilmScore score = scores.remove(filmId);
+            if (score != null) {
+                unlink(score);
+            }
+            facets.remove(filmId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(FilmScore score) {
+        scores.put(score.filmId(), score);
+        ranking.add(score);
+        FilmFacets filmFacets = facets.get(score.filmId());
+        if (filmFacets == null) {
+            return;
+        }
+        for (int genreId : filmFacets.genreIds()) {
+            rankingByGenre.computeIfAbsent(genreId, id -> new TreeSet<>(BY_POPULARITY)).add(score);
+        }
+        rankingByRating.computeIfAbsent(filmFacets.ratingId(), id -> new TreeSet<>(BY_POPULARITY)).add(score);
+        rankingByYear.computeIfAbsent(filmFacets.year(), id -> new TreeSet<>(BY_POPULARITY)).add(score);
+    }
+
+    private void unlink(FilmScore score) {
+        ranking.remove(score);
+        FilmFacets filmFacets = facets.get(score.filmId());
+        if (filmFacets == null) {
+            return;
+        }
+        for (int genreId : filmFacets.genreIds()) {
+            unlink(rankingByGenre, genreId, score);
+        }
+        unlink(rankingByRating, filmFacets.ratingId(), score);
+        unlink(rankingByYear, filmFacets.year(), score);
+    }
+
+    private static void unlink(Map<Integer, TreeSet<FilmScore>> rankings, int key, FilmScore score) {
+        TreeSet<FilmScore> facetRanking = rankings.get(key);
+        if (facetRanking != null && facetRanking.remove(score) && facetRanking.isEmpty()) {
+            rankings.remove(key);
+        }
+    }
+
+    private static NavigableSet<FilmScore> shorter(NavigableSet<FilmScore> current, Integer key,
+                                                   Map<Integer, TreeSet<FilmScore>> rankings) {
+        if (key == null) {
+            return current;
+        }
+        NavigableSet<FilmScore> facetRanking = rankings.get(key);
+        if (facetRanking == null) {
+            return Collections.emptyNavigableSet();
+        }
+        return facetRanking.size() < current.size() ? facetRanking : current;
+    }
+
+    private static boolean matches(FilmFacets filmFacets, Integer genreId, Integer ratingId, Integer year) {
+        if (genreId == null && ratingId == null && year == null) {
+            return true;
+        }
+        if (filmFacets == null) {
+            return false;
+        }
+        return (ratingId == null || ratingId == filmFacets.ratingId())
+                && (year == null || year == filmFacets.year())
+                && (genreId == null || filmFacets.hasGenre(genreId));
+    }
+
+    /**
+     * Загружает рейтинг из БД; вызывается при старте, пока лайки еще не изменяются.
+     */
+    @PostConstruct
+    public void load() {
+        lock.lock();
+        try {
+            Map<Integer, List<Integer>> genresByFilm = new HashMap<>();
+            jdbc.query("SELECT film_id, genre_id FROM film_genre", rs -> {
+                genresByFilm.computeIfAbsent(rs.getInt("film_id"), id -> new ArrayList<>())
+                        .add(rs.getInt("genre_id"));
+            });
+            jdbc.query("SELECT id, like_count, rating_id, EXTRACT(YEAR FROM release_date) AS release_year " +
+                    "FROM film", rs -> {
+                        int filmId = rs.getInt("id");
+                        List<Integer> genreIds = genresByFilm.getOrDefault(filmId, List.of());
+                        facets.put(filmId, new FilmFacets(rs.getInt("rating_id"), rs.getInt("release_year"),
+                                genreIds.stream().mapToInt(Integer::intValue).sorted().toArray()));
+                        put(new FilmScore(filmId, rs.getInt("like_count")));
+                    });
+            log.debug("Рейтинг популярности загружен, фильмов: {}, жанров: {}, рейтингов MPA: {}, лет выхода: {}",
+                    scores.size(), rankingByGenre.size(), rankingByRating.size(), rankingByYear.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record FilmScore(int filmId, int likes) {
+    }
+
+    private record FilmFacets(int ratingId, int year, int[] genreIds) {
+        static FilmFacets of(Film film) {
+            int[] genreIds = Objects.isNull(film.getGenres()) ? NO_GENRES : film.getGenres().stream()
+                    .mapToInt(Genre::getId)
+                    .distinct()
+                    .sorted()
+                    .toArray();
+            return new FilmFacets(Objects.isNull(film.getMpa()) ? 0 : film.getMpa().getId(),
+                    film.getReleaseDate().getYear(), genreIds);
+        }
+
+        boolean hasGenre(int genreId) {
+            for (int id : genreIds) {
+                if (id == genreId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Рекомендации фильмов по схожести лайков. Для каждого пользователя в памяти хранится сжатый битмап id
+ * лайкнутых фильмов. Похожие пользователи ищутся полным проходом по всем битмапам, который делится на части
+ * и выполняется параллельно в {@link ForkJoinPool}: мера схожести - коэффициент Жаккара, для каждого
+ * пользователя считается мощность пересечения без построения самого пересечения. Фильмы ближайших соседей,
+ * которые пользователь еще не лайкнул, ранжируются по сумме схожести соседей, которые их лайкнули.
+ * Индекс загружается из БД при первом обращении и дальше обновляется вместе с film_userlikes.
+ * {@link InMemoryFilmStorage} ведет свой экземпляр без БД и обновляет его сам.
+ */
+@Slf4j
+@Component
+public class FilmRecommendationIndex {
+    private static final int SCAN_LEAF_SIZE = 8192;
+    private static final int LOAD_FETCH_SIZE = 10000;
+    private static final Comparator<Neighbor> BY_SIMILARITY = Comparator.comparingDouble(Neighbor::similarity)
+            .thenComparingInt(Neighbor::overlap)
+            .thenComparing(Comparator.comparingInt(Neighbor::slot).reversed());
+
+    private final JdbcTemplate jdbc;
+    private final int neighborCount;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> slots = new HashMap<>();
+    private RoaringBitmap[] likes = new RoaringBitmap[1024];
+    private int size;
+    private volatile boolean loaded;
+
+    @Autowired
+    public FilmRecommendationIndex(JdbcTemplate jdbc,
+                                   @Value("${filmorate.recommendations.neighbors:50}") int neighborCount) {
+        this.jdbc = jdbc;
+        this.neighborCount = neighborCount;
+    }
+
+    /**
+     * Индекс без БД: сразу считается загруженным и заполняется только через update.
+     */
+    FilmRecommendationIndex(int neighborCount) {
+        this(null, neighborCount);
+        this.loaded = true;
+    }
+
+    /**
+     * Id до count фильмов, рекомендованных пользователю, от самых рекомендуемых к наименее.
+     */
+    public List<Integer> recommendFilmIds(long userId, int count) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(userId);
+            if (slot == null || likes[slot].isEmpty() || count <= 0) {
+                return List.of();
+            }
+            RoaringBitmap target = likes[slot];
+            List<Neighbor> neighbors = ForkJoinPool.commonPool().invoke(new NeighborScan(target, slot, 0, size));
+            Map<Integer, Double> scores = new HashMap<>();
+            for (Neighbor neighbor : neighbors) {
+                RoaringBitmap.andNot(likes[neighbor.slot()], target)
+                        .forEach((int filmId) -> scores.merge(filmId, neighbor.similarity(), Double::sum));
+            }
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .limit(count)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Применяет зафиксированный лайк. Флаг загрузки проверяется под блокировкой: пока индекс не загружен,
+     * изменение пропускается, потому что загрузка прочитает его из БД, а во время загрузки оно ждет ее
+     * окончания и применяется повторно, что безопасно для битмапа.
+     */
+    public void update(long userId, int filmId, boolean liked) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            if (liked) {
+                int slot = slotOf(userId);
+                likes[slot].add(filmId);
+            } else {
+                Integer slot = slots.get(userId);
+                if (slot != null) {
+                    likes[slot].remove(filmId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int slotOf(long userId) {
+        Integer slot = slots.get(userId);
+        if (slot != null) {
+            return slot;
+        }
+        if (size == likes.length) {
+            likes = Arrays.copyOf(likes, size * 2);
+        }
+        likes[size] = new RoaringBitmap();
+        slots.put(userId, size);
+        return size++;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            long start = System.nanoTime();
+            long[] rows = {0};
+            jdbc.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                        "SELECT user_id, film_id FROM film_userlikes ORDER BY user_id, film_id");
+                ps.setFetchSize(LOAD_FETCH_SIZE);
+                return ps;
+            }, rs -> {
+                int slot = slotOf(rs.getLong("user_id"));
+                likes[slot].add(rs.getInt("film_id"));
+                rows[0]++;
+            });
+            for (int i = 0; i < size; i++) {
+                likes[i].runOptimize();
+            }
+            loaded = true;
+            log.info("Индекс рекомендаций загружен: пользователей {}, лайков {}, {} мс", size, rows[0],
+                    (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private record Neighbor(int slot, double similarity, int overlap) {
+    }
+
+    /**
+     * Проход по диапазону пользователей [from, to), который оставляет neighborCount самых похожих на target.
+     */
+    private final class NeighborScan extends RecursiveTask<List<Neighbor>> {
+        private final RoaringBitmap target;
+        private final int targetSlot;
+        private final int from;
+        private final int to;
+
+        private NeighborScan(RoaringBitmap target, int targetSlot, int from, int to) {
+            this.target = target;
+            this.targetSlot = targetSlot;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Neighbor> compute() {
+            if (to - from <= SCAN_LEAF_SIZE) {
+                return scan();
+            }
+            int middle = (from + to) >>> 1;
+            NeighborScan left = new NeighborScan(target, targetSlot, from, middle);
+            left.fork();
+            List<Neighbor> right = new NeighborScan(target, targetSlot, middle, to).compute();
+            return top(left.join(), right);
+        }
+
+        private List<Neighbor> scan() {
+            PriorityQueue<Neighbor> best = new PriorityQueue<>(neighborCount + 1, BY_SIMILARITY);
+            int targetSize = target.getCardinality();
+            for (int slot = from; slot < to; slot++) {
+                if (slot == targetSlot) {
+                    continue;
+                }
+                int overlap = RoaringBitmap.andCardinality(target, likes[slot]);
+                if (overlap == 0) {
+                    continue;
+                }
+                double similarity = (double) overlap / (targetSize + likes[slot].getCardinality() - overlap);
+                best.add(new Neighbor(slot, similarity, overlap));
+                if (best.size() > neighborCount) {
+                    best.poll();
+                }
+            }
+            return new ArrayList<>(best);
+        }
+
+        private List<Neighbor> top(List<Neighbor> first, List<Neighbor> second) {
+            List<Neighbor> merged = new ArrayList<>(first.size() + second.size());
+            merged.addAll(first);
+            merged.addAll(second);
+            merged.sort(BY_SIMILARITY.reversed());
+            return merged.size() > neighborCount ? merged.subList(0, neighborCount) : merged;
+        }
+    }
+}
@@ -4,18 +4,55 @@ import ru.yandex.practicum.filmorate.model.Film;
 
 import java.util.Collection;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Collection<Film> findAll();
 
+    Collection<Film> findPage(int afterId, int limit);
+
+    void streamAll(Consumer<Film> consumer);
+
     Film create(Film newFilm);
 
     Film update(Film updFilm);
 
     Optional<Film> findFilmById(Integer id);
 
+    Collection<Film> findFilmsByIds(Collection<Integer> ids);
+
+    boolean existsById(Integer id);
+
     void addLike(Integer filmId, Long userId);
 
     void deleteLike(Integer filmId, Long userId);
 
+    /**
+     * Самые популярные фильмы среди подходящих под заданные жанр, рейтинг MPA и год выхода; фильтр null
+     * не ограничивает выдачу.
+     */
+    Collection<Film> findTopPopularFilms(int count, Integer genreId, Integer ratingId, Integer year);
+
+    /**
+     * Краткие виды фильмов для списков: число лайков заполнено в likeCount, множества лайков не загружаются.
+     */
+    Collection<Film> findAllSummaries();
+
+    Collection<Film> findSummaryPage(int afterId, int limit);
+
+    Collection<Film> findTopPopularFilmSummaries(int count, Integer genreId, Integer ratingId, Integer year);
+
+    /**
+     * Страница id пользователей, лайкнувших фильм, по возрастанию id, начиная после afterUserId.
+     */
+    Collection<Long> findLikes(Integer filmId, long afterUserId, int limit);
+
+    /**
+     * До count фильмов, которые пользователь еще не лайкнул, но лайкнули пользователи с похожими лайками,
+     * от самых рекомендуемых к наименее.
+     */
+    Collection<Film> findRecommendedFilms(Long userId, int count);
+
+    Collection<Film> findRecommendedFilmSummaries(Long userId, int count);
+
 }
@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+
+import ru.yandex.practicum.filmorate.model.SortedLongSet;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Списки друзей пользователей в виде отсортированных массивов id. Список читается из БД при первом обращении
+ * и сбрасывается при изменении дружбы. Общие друзья находятся пересечением двух списков: слиянием, если списки
+ * сравнимы по длине, или бинарным поиском элементов короткого списка в длинном, поэтому время растет
+ * с min(|A|, |B|).
+ */
+@Component
+@RequiredArgsConstructor
+public class FriendGraph {
+    private static final int GALLOP_RATIO = 8;
+
+    private final JdbcTemplate jdbc;
+    private final Cache<Long, long[]> friendIdsCache;
+
+    public long[] friendIds(long userId) {
+        return friendIdsCache.get(userId, this::loadFriendIds);
+    }
+
+    /**
+     * Списки друзей сразу нескольких пользователей: отсутствующие в кэше списки читаются одним запросом.
+     */
+    public Map<Long, long[]> friendIds(Collection<Long> userIds) {
+        return friendIdsCache.getAll(userIds, this::loadFriendIds);
+    }
+
+    public long[] commonFriendIds(long userId, long otherId) {
+        return intersect(friendIds(userId), friendIds(otherId));
+    }
+
+    public void invalidate(long userId) {
+        CacheInvalidation.invalidate(friendIdsCache, userId);
+    }
+
+    static long[] intersect(long[] first, long[] second) {
+        long[] shorter = first.length <= second.length ? first : second;
+        long[] longer = shorter == first ? second : first;
+        long[] result = new long[shorter.length];
+        int size = 0;
+        if ((long) shorter.length * GALLOP_RATIO < longer.length) {
+            int from = 0;
+            for (long id : shorter) {
+                int position = Arrays.binarySearch(longer, from, longer.length, id);
+                if (position >= 0) {
+                    result[size++] = id;
+                    from = position + 1;
+                } else {
+                    from = -position - 1;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < shorter.length && j < longer.length) {
+                if (shorter[i] < longer[j]) {
+                    i++;
+                } else if (shorter[i] > longer[j]) {
+                    j++;
+                } else {
+                    result[size++] = shorter[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private Map<Long, long[]> loadFriendIds(Set<? extends Long> userIds) {
+        String query = "SELECT user_id, user_friend_id FROM user_friends WHERE user_id = ANY(?) " +
+                "ORDER BY user_id, user_friend_id";
+        Map<Long, SortedLongSet> friends = new HashMap<>();
+        jdbc.query(query, rs -> {
+            friends.computeIfAbsent(rs.getLong("user_id"), id -> new SortedLongSet()).add(rs.getLong("user_friend_id"));
+        }, (Object) userIds.toArray(new Long[0]));
+        Map<Long, long[]> result = new HashMap<>();
+        for (Long userId : userIds) {
+            SortedLongSet userFriends = friends.get(userId);
+            result.put(userId, userFriends == null ? new long[0] : userFriends.toLongArray());
+        }
+        return result;
+    }
+
+    private long[] loadFriendIds(Long userId) {
+        String query = "SELECT user_friend_id FROM user_friends WHERE user_id = ? ORDER BY user_friend_id";
+        return jdbc.query(query, (ResultSetExtractor<long[]>) rs -> {
+            long[] ids = new long[16];
+            int size = 0;
+            while (rs.next()) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                }
+                ids[size++] = rs.getLong(1);
+            }
+            return Arrays.copyOf(ids, size);
+        }, userId);
+    }
+}
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Primary;
@@ -10,8 +11,14 @@ import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
+/**
+ * Справочник жанров. Таблица почти не меняется, поэтому она целиком загружается при старте в массив,
+ * индексированный по id, и запросы к справочнику не обращаются к БД. После изменения таблицы
+ * справочник нужно перечитать через {@link #reload()}.
+ */
 @Repository
 @Primary
 @RequiredArgsConstructor
@@ -20,21 +27,32 @@ public class GenreDbStorage implements GenreStorage {
 
     private final JdbcTemplate jdbc;
     private final GenreRowMapper genreMapper;
+    private volatile Genre[] genresById = new Genre[0];
+    private volatile List<Genre> genres = List.of();
+
+    @PostConstruct
+    public void reload() {
+        String query = "SELECT * FROM genre ORDER BY id";
+        List<Genre> loaded = List.copyOf(jdbc.query(query, genreMapper));
+        Genre[] byId = new Genre[loaded.isEmpty() ? 0 : loaded.getLast().getId() + 1];
+        loaded.forEach(genre -> byId[genre.getId()] = genre);
+        genresById = byId;
+        genres = loaded;
+        log.info("Справочник жанров загружен, записей: {}", loaded.size());
+    }
 
     @Override
     public Collection<Genre> findAll() {
-        String query = "SELECT * FROM genre";
-        return jdbc.query(query, genreMapper);
+        return genres;
     }
 
     @Override
     public Optional<Genre> findGenreById(Integer id) {
-        String query = "SELECT * FROM genre WHERE id = ?";
-        List<Genre> result = jdbc.query(query, genreMapper, id);
-        if (result.size() == 0) {
+        Genre[] byId = genresById;
+        if (Objects.isNull(id) || id < 0 || id >= byId.length) {
             return Optional.empty();
         }
-        return Optional.ofNullable(result.getFirst());
+        return Optional.ofNullable(byId[id]);
     }
 
 }
@@ -0,0 +1,162 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.SortedLongSet;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Хранилище пользователей, которое отвечает на чтение из памяти: записи пользователей хранятся в карте,
+ * а друзья, общие друзья и предложения друзей берутся из {@link SocialGraph}. Пользователи и граф дружбы
+ * загружаются при старте, после этого чтение в БД не ходит. Изменения записываются в БД через бин
+ * {@link UserDbStorage} и затем применяются в памяти. Массовый импорт в этом режиме недоступен, так как он
+ * пишет в БД в обход хранилища. Включается свойством filmorate.users.storage=graph.
+ */
+@Slf4j
+@Repository
+@Primary
+@ConditionalOnProperty(name = "filmorate.users.storage", havingValue = "graph")
+public class GraphUserStorage implements UserStorage {
+    private final JdbcTemplate jdbc;
+    private final UserRowMapper userRowMapper;
+    private final SocialGraph socialGraph;
+    private final UserDbStorage database;
+    private final Map<Long, User> users = new ConcurrentHashMap<>();
+
+    public GraphUserStorage(JdbcTemplate jdbc, UserRowMapper userRowMapper, SocialGraph socialGraph,
+                            UserDbStorage database) {
+        this.jdbc = jdbc;
+        this.userRowMapper = userRowMapper;
+        this.socialGraph = socialGraph;
+        this.database = database;
+    }
+
+    /**
+     * Загружает пользователей и граф дружбы из БД заново.
+     */
+    @PostConstruct
+    public void load() {
+        long start = System.nanoTime();
+        users.clear();
+        jdbc.query("SELECT * FROM users", (RowCallbackHandler) rs -> {
+            User user = userRowMapper.mapRow(rs, 0);
+            users.put(user.getId(), user);
+        });
+        socialGraph.reload();
+        log.info("Хранилище пользователей в памяти загружено: пользователей {}, {} мс", users.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public Collection<User> findAll() {
+        return users.values().stream()
+                .sorted(Comparator.comparing(User::getId))
+                .map(this::withFriends)
+                .toList();
+    }
+
+    @Override
+    public User create(User newUser) {
+        User user = database.create(newUser);
+        users.put(user.getId(), user.toBuilder().build());
+        user.setFriends(new SortedLongSet());
+        return user;
+    }
+
+    @Override
+    public User update(User updUser) {
+        User user = database.update(updUser);
+        users.put(user.getId(), user.toBuilder().friends(null).build());
+        return user;
+    }
+
+    @Override
+    public Optional<User> findUserById(Long id) {
+        return Optional.ofNullable(record(id)).map(this::withFriends);
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return users.containsKey(id);
+    }
+
+    @Override
+    public void addFriend(Long userId, Long friendId) {
+        database.addFriend(userId, friendId);
+    }
+
+    @Override
+    public boolean deleteFriend(Long userId, Long friendId) {
+        return database.deleteFriend(userId, friendId);
+    }
+
+    @Override
+    public List<User> getFriendsByUserId(Long userId, long afterFriendId, int limit, boolean withFriendIds) {
+        long[] friendIds = socialGraph.friendIds(userId);
+        int position = Arrays.binarySearch(friendIds, afterFriendId);
+        int from = position >= 0 ? position + 1 : -position - 1;
+        List<User> friends = new ArrayList<>(Math.min(limit, friendIds.length - from));
+        for (int i = from; i < friendIds.length && friends.size() < limit; i++) {
+            User friend = record(friendIds[i]);
+            if (friend != null) {
+                friends.add(withFriendIds ? withFriends(friend) : friend.toBuilder().build());
+            }
+        }
+        return friends;
+    }
+
+    @Override
+    public Collection<User> getCommonFriends(Long userId, Long otherId) {
+        return toUsers(socialGraph.commonFriendIds(userId, otherId));
+    }
+
+    @Override
+    public List<User> getFriendSuggestions(Long userId, int count) {
+        SocialGraph.Suggestions suggestions = socialGraph.suggest(userId, count);
+        List<User> suggested = new ArrayList<>(suggestions.userIds().length);
+        for (int i = 0; i < suggestions.userIds().length; i++) {
+            User user = record(suggestions.userIds()[i]);
+            if (user != null) {
+                suggested.add(user.toBuilder().mutualFriends(suggestions.mutualFriends()[i]).build());
+            }
+        }
+        return suggested;
+    }
+
+    private List<User> toUsers(long[] ids) {
+        List<User> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            User user = record(id);
+            if (user != null) {
+                result.add(withFriends(user));
+            }
+        }
+        return result;
+    }
+
+    private User withFriends(User user) {
+        return user.toBuilder().friends(SortedLongSet.ofSorted(socialGraph.friendIds(user.getId()))).build();
+    }
+
+    /**
+     * Запись пользователя без друзей.
+     */
+    private User record(long id) {
+        return users.get(id);
+    }
+}
@@ -0,0 +1,153 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+@Repository
+@RequiredArgsConstructor
+public class ImportDbStorage implements ImportStorage {
+    private static final String INSERT_FILM = "INSERT INTO film(name, description, release_date, duration, rating_id) " +
+            "VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_FILM_GENRE =
+            "MERGE INTO film_genre(film_id, genre_id) KEY(film_id, genre_id) VALUES (?, ?)";
+    private static final String INSERT_USER = "INSERT INTO users(email, login, name, birthday) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_FRIENDSHIP =
+            "MERGE INTO user_friends (user_id, user_friend_id) KEY (user_id, user_friend_id) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbc;
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmLikesWriter likesWriter;
+    private final Cache<Long, User> userCache;
+    private final FriendGraph friendGraph;
+    private final SocialGraph socialGraph;
+
+    @Override
+    public List<Integer> importFilms(List<Film> films) {
+        List<Integer> ids = insertWithKeys(INSERT_FILM, films, (ps, film) -> {
+            ps.setString(1, film.getName());
+            ps.setString(2, film.getDescription());
+            ps.setObject(3, film.getReleaseDate());
+            ps.setInt(4, film.getDuration());
+            ps.setInt(5, film.getMpa().getId());
+        }, Number::intValue);
+        List<Object[]> filmGenres = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            if (!Objects.isNull(films.get(i).getGenres())) {
+                for (Genre genre : films.get(i).getGenres()) {
+                    filmGenres.add(new Object[]{ids.get(i), genre.getId()});
+                }
+            }
+        }
+        if (!filmGenres.isEmpty()) {
+            jdbc.batchUpdate(INSERT_FILM_GENRE, filmGenres);
+        }
+        for (int i = 0; i < films.size(); i++) {
+            films.get(i).setId(ids.get(i));
+        }
+        AfterCommit.run(() -> films.forEach(popularityIndex::register));
+        return ids;
+    }
+
+    @Override
+    public List<Long> importUsers(List<User> users) {
+        List<Long> ids = insertWithKeys(INSERT_USER, users, (ps, user) -> {
+            ps.setString(1, user.getEmail());
+            ps.setString(2, user.getLogin());
+            ps.setString(3, user.getName());
+            ps.setObject(4, user.getBirthday());
+        }, Number::longValue);
+        AfterCommit.run(() -> ids.forEach(socialGraph::addUser));
+        return ids;
+    }
+
+    @Override
+    public void importLikes(List<Like> likes) {
+        likesWriter.apply(likes.stream()
+                .map(like -> new LikeMutation(like.filmId(), like.userId(), true))
+                .toList());
+    }
+
+    @Override
+    public void importFriendships(List<Friendship> friendships) {
+        if (friendships.isEmpty()) {
+            return;
+        }
+        jdbc.batchUpdate(INSERT_FRIENDSHIP, friendships.stream()
+                .map(friendship -> new Object[]{friendship.userId(), friendship.friendId()})
+                .toList());
+        AfterCommit.run(() -> friendships.forEach(friendship ->
+                socialGraph.addEdge(friendship.userId(), friendship.friendId())));
+        friendships.stream().map(Friendship::userId).distinct().forEach(userId -> {
+            CacheInvalidation.invalidate(userCache, userId);
+            friendGraph.invalidate(userId);
+        });
+    }
+
+    @Override
+    public Set<Integer> findExistingFilmIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbc.queryForList("SELECT id FROM film WHERE id = ANY(?)", Integer.class,
+                (Object) ids.toArray(new Integer[0])));
+    }
+
+    @Override
+    public Set<Long> findExistingUserIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbc.queryForList("SELECT id FROM users WHERE id = ANY(?)", Long.class,
+                (Object) ids.toArray(new Long[0])));
+    }
+
+    /**
+     * Вставляет строки одним пакетом и возвращает сгенерированные id в порядке строк.
+     */
+    private <T, K> List<K> insertWithKeys(String query, List<T> rows, ParameterizedPreparedStatementSetter<T> setter,
+                                          Function<Number, K> keyConverter) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(connection -> connection.prepareStatement(query, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setter.setValues(ps, rows.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows.size();
+                    }
+                }, keyHolder);
+        List<K> ids = new ArrayList<>(rows.size());
+        for (Map<String, Object> keys : keyHolder.getKeyList()) {
+            ids.add(keyConverter.apply((Number) keys.values().iterator().next()));
+        }
+        return ids;
+    }
+}
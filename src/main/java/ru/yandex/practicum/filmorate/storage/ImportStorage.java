@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Пакетная запись при массовом импорте. Каждый метод пишет всю пачку несколькими пакетными запросами
+ * и должен вызываться внутри транзакции, чтобы пачка записывалась целиком или не записывалась вовсе.
+ */
+public interface ImportStorage {
+    List<Integer> importFilms(List<Film> films);
+
+    List<Long> importUsers(List<User> users);
+
+    void importLikes(List<Like> likes);
+
+    void importFriendships(List<Friendship> friendships);
+
+    Set<Integer> findExistingFilmIds(Collection<Integer> ids);
+
+    Set<Long> findExistingUserIds(Collection<Long> ids);
+}
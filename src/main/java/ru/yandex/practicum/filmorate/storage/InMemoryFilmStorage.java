@@ -1,58 +1,189 @@
 package ru.yandex.practicum.filmorate.storage;
 
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.SortedLongSet;
 import ru.yandex.practicum.filmorate.validation.FilmValidator;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+/**
+ * Хранилище фильмов в памяти на {@link StripedStore}: id выдаются атомарным счетчиком, фильм изменяется под
+ * блокировкой своей полосы, а выгрузки и рейтинги строятся по согласованному снимку. Вызывающему всегда
+ * возвращаются копии. Названия жанров и рейтинга, как и в БД, берутся из справочников.
+ * Включается свойством filmorate.films.storage=memory. С {@link MemoryPersistence} создание и изменение фильмов
+ * и лайков сначала пишутся в {@link StoreJournal} и применяются в памяти только после того, как запись попала
+ * на диск.
+ * Популярные фильмы и рекомендации берутся из собственных {@link FilmPopularityIndex} и
+ * {@link FilmRecommendationIndex}, которые обновляются вместе с фильмами и лайками под блокировкой фильма.
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
+@Primary
+@ConditionalOnProperty(name = "filmorate.films.storage", havingValue = "memory")
 public class InMemoryFilmStorage implements FilmStorage {
-    private final Map<Integer, Film> films;
+    private static final int DEFAULT_NEIGHBOR_COUNT = 50;
+    private static final byte FILM = 1;
+    private static final byte LIKE_ADDED = 2;
+    private static final byte LIKE_REMOVED = 3;
+
+    private final GenreStorage genreStorage;
+    private final RatingStorage ratingStorage;
+    private final StripedStore<Integer, Film> films = new StripedStore<>(InMemoryFilmStorage::copy);
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final FilmPopularityIndex popularity = new FilmPopularityIndex();
+    private final FilmRecommendationIndex recommendations;
+    private final StoreJournal journal;
+
+    public InMemoryFilmStorage(GenreStorage genreStorage, RatingStorage ratingStorage) {
+        this(genreStorage, ratingStorage, (StoreJournal) null, DEFAULT_NEIGHBOR_COUNT);
+    }
+
+    @Autowired
+    public InMemoryFilmStorage(GenreStorage genreStorage, RatingStorage ratingStorage,
+                               MemoryPersistence persistence,
+                               @Value("${filmorate.recommendations.neighbors:50}") int neighborCount) {
+        this(genreStorage, ratingStorage, persistence.open("films").orElse(null), neighborCount);
+    }
+
+    private InMemoryFilmStorage(GenreStorage genreStorage, RatingStorage ratingStorage, StoreJournal journal,
+                                int neighborCount) {
+        this.genreStorage = genreStorage;
+        this.ratingStorage = ratingStorage;
+        this.journal = journal;
+        this.recommendations = new FilmRecommendationIndex(neighborCount);
+    }
+
+    /**
+     * Восстанавливает фильмы из последнего снимка и журнала.
+     */
+    @PostConstruct
+    public void recover() {
+        if (Objects.isNull(journal)) {
+            return;
+        }
+        journal.recover(this::readSnapshot, this::replay);
+        lastId.set(films.query(values -> values.stream().mapToInt(Film::getId).max().orElse(0)));
+        journal.scheduleSnapshots(this::snapshot);
+    }
+
+    /**
+     * Записывает снимок всех фильмов, если с предыдущего были изменения.
+     */
+    public void snapshot() {
+        if (Objects.isNull(journal) || !journal.hasChangesSinceSnapshot()) {
+            return;
+        }
+        Captured captured = films.query(values -> new Captured(journal.rollover(),
+                values.stream().map(InMemoryFilmStorage::copy).toList()));
+        journal.writeSnapshot(captured.lsn(), out -> {
+            out.writeInt(captured.films().size());
+            for (Film film : captured.films()) {
+                writeFilm(out, film);
+                StoreJournal.writeIds(out, film.getUserLikes().toLongArray());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        if (Objects.isNull(journal)) {
+            return;
+        }
+        snapshot();
+        journal.close();
+    }
 
     @Override
     public Collection<Film> findAll() {
-        return films.values();
+        return films.snapshot();
+    }
+
+    @Override
+    public Collection<Film> findPage(int afterId, int limit) {
+        return films.page(afterId, limit);
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> consumer) {
+        films.snapshot().forEach(consumer);
     }
 
     @Override
     public Film create(Film newFilm) {
         FilmValidator.validateNull(newFilm);
         FilmValidator.validateFormat(newFilm);
-        newFilm.setId((getNextId()));
+        Film film = copy(newFilm);
+        film.setId(lastId.incrementAndGet());
+        film.setMpa(resolveRating(film.getMpa()));
+        film.setGenres(resolveGenres(film.getGenres()));
         if (Objects.isNull(newFilm.getUserLikes())) {
-            newFilm.setUserLikes(new HashSet<>());
+            film.setUserLikes(new SortedLongSet());
         }
-        films.put(newFilm.getId(), newFilm);
-        return newFilm;
+        Film created = films.insert(film.getId(), film, stored -> {
+            logFilm(stored);
+            index(stored);
+            return copy(stored);
+        });
+        log.info("Фильм {} добавлен", created);
+        return created;
     }
 
     @Override
     public Film update(Film updFilm) {
-        if (!films.containsKey(updFilm.getId()) || updFilm.getName().isBlank()) {
-            String idNotFound = String.format("Фильм с id = %d не найден", updFilm.getId());
-            log.warn(idNotFound);
-            throw new NotFoundException(idNotFound);
-        }
         FilmValidator.validateFormat(updFilm);
-        Film oldFilm = films.get(updFilm.getId());
-        oldFilm.setDescription(Objects.isNull(updFilm.getDescription()) || updFilm.getDescription().isBlank() ?
-                oldFilm.getDescription() : updFilm.getDescription());
-        oldFilm.setName(Objects.isNull(updFilm.getName()) || updFilm.getName().isBlank() ?
-                oldFilm.getName() : updFilm.getName());
-        oldFilm.setReleaseDate(
-                Objects.isNull(updFilm.getReleaseDate()) ? oldFilm.getReleaseDate() : updFilm.getReleaseDate());
-        oldFilm.setDuration(Objects.isNull(updFilm.getDuration()) ? oldFilm.getDuration() : updFilm.getDuration());
-        return oldFilm;
+        Film film = films.mutate(updFilm.getId(), oldFilm -> {
+            Film updated = copy(oldFilm);
+            updated.setDescription(Objects.isNull(updFilm.getDescription()) || updFilm.getDescription().isBlank() ?
+                    oldFilm.getDescription() : updFilm.getDescription());
+            updated.setName(Objects.isNull(updFilm.getName()) || updFilm.getName().isBlank() ?
+                    oldFilm.getName() : updFilm.getName());
+            updated.setReleaseDate(
+                    Objects.isNull(updFilm.getReleaseDate()) ? oldFilm.getReleaseDate() : updFilm.getReleaseDate());
+            updated.setDuration(
+                    Objects.isNull(updFilm.getDuration()) ? oldFilm.getDuration() : updFilm.getDuration());
+            updated.setMpa(Objects.isNull(updFilm.getMpa()) ? oldFilm.getMpa() : resolveRating(updFilm.getMpa()));
+            updated.setGenres(Objects.isNull(updFilm.getGenres()) ?
+                    oldFilm.getGenres() : resolveGenres(updFilm.getGenres()));
+            logFilm(updated);
+            oldFilm.setDescription(updated.getDescription());
+            oldFilm.setName(updated.getName());
+            oldFilm.setReleaseDate(updated.getReleaseDate());
+            oldFilm.setDuration(updated.getDuration());
+            oldFilm.setMpa(updated.getMpa());
+            oldFilm.setGenres(new LinkedHashSet<>(updated.getGenres()));
+            popularity.register(oldFilm);
+            return updated;
+        }, null);
+        if (Objects.isNull(film)) {
+            throw notFound(updFilm.getId());
+        }
+        log.info("Фильм с id = {} обновлен", film.getId());
+        return film;
     }
 
     @Override
@@ -60,23 +191,268 @@ public class InMemoryFilmStorage implements FilmStorage {
         return Optional.ofNullable(films.get(id));
     }
 
+    @Override
+    public Collection<Film> findFilmsByIds(Collection<Integer> ids) {
+        return ids.stream().distinct().map(films::get).filter(Objects::nonNull).toList();
+    }
+
+    @Override
+    public boolean existsById(Integer id) {
+        return films.contains(id);
+    }
+
     @Override
     public void addLike(Integer filmId, Long userId) {
-        films.get(filmId).getUserLikes().add(userId);
+        boolean found = films.mutate(filmId, film -> changeLike(film, userId, true), null) != null;
+        if (!found) {
+            throw notFound(filmId);
+        }
     }
 
     @Override
     public void deleteLike(Integer filmId, Long userId) {
-        films.get(filmId).getUserLikes().remove(userId);
+        boolean found = films.mutate(filmId, film -> changeLike(film, userId, false), null) != null;
+        if (!found) {
+            throw notFound(filmId);
+        }
+    }
+
+    @Override
+    public Collection<Film> findTopPopularFilms(int count, Integer genreId, Integer ratingId, Integer year) {
+        return findTopPopular(count, genreId, ratingId, year, InMemoryFilmStorage::copy);
+    }
+
+    @Override
+    public Collection<Film> findAllSummaries() {
+        return films.snapshot(InMemoryFilmStorage::summary);
+    }
+
+    @Override
+    public Collection<Film> findSummaryPage(int afterId, int limit) {
+        return films.page(afterId, limit, InMemoryFilmStorage::summary);
+    }
+
+    @Override
+    public Collection<Film> findTopPopularFilmSummaries(int count, Integer genreId, Integer ratingId, Integer year) {
+        return findTopPopular(count, genreId, ratingId, year, InMemoryFilmStorage::summary);
+    }
+
+    private Collection<Film> findTopPopular(int count, Integer genreId, Integer ratingId, Integer year,
+                                            Function<Film, Film> reader) {
+        return read(popularity.findTopFilmIds(count, genreId, ratingId, year), reader);
+    }
+
+    @Override
+    public Collection<Long> findLikes(Integer filmId, long afterUserId, int limit) {
+        long[] userIds = films.read(filmId, film -> film.getUserLikes().toLongArray(), new long[0]);
+        int position = Arrays.binarySearch(userIds, afterUserId);
+        int from = position >= 0 ? position + 1 : -position - 1;
+        return Arrays.stream(userIds, from, from + Math.min(limit, userIds.length - from)).boxed().toList();
     }
 
-    private int getNextId() {
-        int currentMaxId = films.keySet()
-                .stream()
-                .mapToInt(id -> id)
-                .max()
-                .orElse(0);
-        return ++currentMaxId;
+    @Override
+    public Collection<Film> findRecommendedFilms(Long userId, int count) {
+        return findRecommended(userId, count, InMemoryFilmStorage::copy);
+    }
+
+    @Override
+    public Collection<Film> findRecommendedFilmSummaries(Long userId, int count) {
+        return findRecommended(userId, count, InMemoryFilmStorage::summary);
+    }
+
+    private Collection<Film> findRecommended(Long userId, int count, Function<Film, Film> reader) {
+        return read(recommendations.recommendFilmIds(userId, count), reader);
+    }
+
+    /**
+     * Фильмы по id из индекса в том же порядке; фильмы, которых уже нет, пропускаются.
+     */
+    private List<Film> read(List<Integer> filmIds, Function<Film, Film> reader) {
+        return filmIds.stream()
+                .map(filmId -> films.read(filmId, reader, null))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private Rating resolveRating(Rating rating) {
+        return Objects.isNull(rating) ? null : ratingStorage.findRatingById(rating.getId()).orElse(rating);
+    }
+
+    /**
+     * Жанры по возрастанию id, как их возвращает БД; пустое множество вместо null.
+     */
+    private Set<Genre> resolveGenres(Collection<Genre> genres) {
+        Set<Genre> resolved = new LinkedHashSet<>();
+        if (!Objects.isNull(genres)) {
+            genres.stream()
+                    .map(genre -> genreStorage.findGenreById(genre.getId()).orElse(genre))
+                    .sorted(Comparator.comparingInt(Genre::getId))
+                    .forEach(resolved::add);
+        }
+        return resolved;
     }
 
+    /**
+     * Меняет лайк и возвращает, изменилось ли множество лайков.
+     */
+    private Boolean changeLike(Film film, long userId, boolean added) {
+        boolean changed = added != film.getUserLikes().contains(userId);
+        if (changed) {
+            logMutation(out -> {
+                out.writeByte(added ? LIKE_ADDED : LIKE_REMOVED);
+                out.writeInt(film.getId());
+                out.writeLong(userId);
+            });
+            applyLike(film, userId, added);
+        }
+        return changed;
+    }
+
+    /**
+     * Применяет лайк к фильму и индексам; вызывается под блокировкой фильма.
+     */
+    private boolean applyLike(Film film, long userId, boolean added) {
+        boolean changed = added ? film.getUserLikes().add(userId) : film.getUserLikes().remove(userId);
+        if (changed) {
+            popularity.adjust(film.getId(), added ? 1 : -1);
+            recommendations.update(userId, film.getId(), added);
+        }
+        return changed;
+    }
+
+    /**
+     * Добавляет в индексы новый или прочитанный из снимка фильм вместе с его лайками.
+     */
+    private void index(Film film) {
+        popularity.register(film);
+        popularity.adjust(film.getId(), film.getUserLikes().size());
+        for (long userId : film.getUserLikes().toLongArray()) {
+            recommendations.update(userId, film.getId(), true);
+        }
+    }
+
+    private void logFilm(Film film) {
+        logMutation(out -> {
+            out.writeByte(FILM);
+            writeFilm(out, film);
+        });
+    }
+
+    /**
+     * Дописывает изменение в журнал и ждет, пока оно попадет на диск. Вызывается под блокировкой изменяемого
+     * фильма до самого изменения: если запись не удалась, фильм не меняется, а другие потоки видят изменение
+     * только после того, как оно стало надежным.
+     */
+    private void logMutation(StoreJournal.Writer record) {
+        if (!Objects.isNull(journal)) {
+            journal.sync(journal.append(record));
+        }
+    }
+
+    private void readSnapshot(DataInput in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Film film = readFilm(in);
+            film.setUserLikes(SortedLongSet.ofSorted(StoreJournal.readIds(in)));
+            films.insert(film.getId(), film, stored -> {
+                index(stored);
+                return null;
+            });
+        }
+    }
+
+    private void replay(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case FILM -> {
+                Film film = readFilm(in);
+                film.setUserLikes(films.read(film.getId(), stored -> stored.getUserLikes().copy(),
+                        new SortedLongSet()));
+                films.insert(film.getId(), film, stored -> {
+                    popularity.register(stored);
+                    return null;
+                });
+            }
+            case LIKE_ADDED, LIKE_REMOVED -> {
+                int filmId = in.readInt();
+                long userId = in.readLong();
+                films.mutate(filmId, film -> applyLike(film, userId, type == LIKE_ADDED), false);
+            }
+            default -> throw new IOException("Неизвестный тип записи журнала фильмов: " + type);
+        }
+    }
+
+    private static void writeFilm(DataOutput out, Film film) throws IOException {
+        out.writeInt(film.getId());
+        StoreJournal.writeString(out, film.getName());
+        StoreJournal.writeString(out, film.getDescription());
+        out.writeLong(Objects.isNull(film.getReleaseDate()) ? Long.MIN_VALUE : film.getReleaseDate().toEpochDay());
+        out.writeInt(Objects.isNull(film.getDuration()) ? -1 : film.getDuration());
+        out.writeBoolean(!Objects.isNull(film.getMpa()));
+        if (!Objects.isNull(film.getMpa())) {
+            out.writeInt(film.getMpa().getId());
+            StoreJournal.writeString(out, film.getMpa().getName());
+        }
+        out.writeInt(film.getGenres().size());
+        for (Genre genre : film.getGenres()) {
+            out.writeInt(genre.getId());
+            StoreJournal.writeString(out, genre.getName());
+        }
+    }
+
+    private static Film readFilm(DataInput in) throws IOException {
+        Film film = Film.builder()
+                .id(in.readInt())
+                .name(StoreJournal.readString(in))
+                .description(StoreJournal.readString(in))
+                .build();
+        long releaseDate = in.readLong();
+        film.setReleaseDate(releaseDate == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(releaseDate));
+        int duration = in.readInt();
+        film.setDuration(duration < 0 ? null : duration);
+        if (in.readBoolean()) {
+            film.setMpa(new Rating(in.readInt(), StoreJournal.readString(in)));
+        }
+        int genreCount = in.readInt();
+        Set<Genre> genres = new LinkedHashSet<>();
+        for (int i = 0; i < genreCount; i++) {
+            genres.add(Genre.builder().id(in.readInt()).name(StoreJournal.readString(in)).build());
+        }
+        film.setGenres(genres);
+        return film;
+    }
+
+    private static NotFoundException notFound(int filmId) {
+        String idNotFound = String.format("Фильм с id = %d не найден", filmId);
+        log.warn(idNotFound);
+        return new NotFoundException(idNotFound);
+    }
+
+    /**
+     * Копия фильма с собственными множествами жанров и лайков; число лайков заполнено в likeCount.
+     */
+    private static Film copy(Film film) {
+        Film copy = film.toBuilder()
+                .genres(Objects.isNull(film.getGenres()) ? null : new LinkedHashSet<>(film.getGenres()))
+                .build();
+        if (!Objects.isNull(film.getUserLikes())) {
+            copy.setUserLikes(film.getUserLikes().copy());
+            copy.setLikeCount(film.getUserLikes().size());
+        }
+        return copy;
+    }
+
+    /**
+     * Краткий вид фильма: жанры копируются, а от множества лайков берется только их число.
+     */
+    private static Film summary(Film film) {
+        return film.toBuilder()
+                .genres(Objects.isNull(film.getGenres()) ? null : new LinkedHashSet<>(film.getGenres()))
+                .userLikes(null)
+                .likeCount(Objects.isNull(film.getUserLikes()) ? film.getLikeCount() : film.getUserLikes().size())
+                .build();
+    }
+
+    private record Captured(long lsn, List<Film> films) {
+    }
 }
@@ -1,101 +1,355 @@
 package ru.yandex.practicum.filmorate.storage;
 
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.SortedLongSet;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.validation.UserValidator;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Хранилище пользователей в памяти на {@link StripedStore}: id выдаются атомарным счетчиком, дружба
+ * пользователя изменяется под блокировкой его полосы, а полная выгрузка строится по согласованному снимку.
+ * Вызывающему всегда возвращаются копии. Включается свойством filmorate.users.storage=memory.
+ * С {@link MemoryPersistence} создание и изменение пользователей и дружбы сначала пишутся в {@link StoreJournal}
+ * и применяются в памяти только после того, как запись попала на диск.
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
+@Primary
+@ConditionalOnProperty(name = "filmorate.users.storage", havingValue = "memory")
 public class InMemoryUserStorage implements UserStorage {
-    private final Map<Long, User> users;
+    private static final long[] NO_FRIENDS = new long[0];
+    private static final byte USER = 1;
+    private static final byte FRIEND_ADDED = 2;
+    private static final byte FRIEND_REMOVED = 3;
+
+    private final StripedStore<Long, User> users = new StripedStore<>(InMemoryUserStorage::copy);
+    private final AtomicLong lastId = new AtomicLong();
+    private final StoreJournal journal;
+
+    public InMemoryUserStorage() {
+        this.journal = null;
+    }
+
+    @Autowired
+    public InMemoryUserStorage(MemoryPersistence persistence) {
+        this.journal = persistence.open("users").orElse(null);
+    }
+
+    /**
+     * Восстанавливает пользователей из последнего снимка и журнала.
+     */
+    @PostConstruct
+    public void recover() {
+        if (Objects.isNull(journal)) {
+            return;
+        }
+        journal.recover(this::readSnapshot, this::replay);
+        lastId.set(users.query(values -> values.stream().mapToLong(User::getId).max().orElse(0)));
+        journal.scheduleSnapshots(this::snapshot);
+    }
+
+    /**
+     * Записывает снимок всех пользователей, если с предыдущего были изменения.
+     */
+    public void snapshot() {
+        if (Objects.isNull(journal) || !journal.hasChangesSinceSnapshot()) {
+            return;
+        }
+        Captured captured = users.query(values -> new Captured(journal.rollover(),
+                values.stream().map(InMemoryUserStorage::copy).toList()));
+        journal.writeSnapshot(captured.lsn(), out -> {
+            out.writeInt(captured.users().size());
+            for (User user : captured.users()) {
+                writeUser(out, user);
+                StoreJournal.writeIds(out, user.getFriends().toLongArray());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        if (Objects.isNull(journal)) {
+            return;
+        }
+        snapshot();
+        journal.close();
+    }
 
     @Override
     public Collection<User> findAll() {
-        log.debug("Список пользователей для вывода: {}", users.values());
-        return users.values();
+        List<User> allUsers = users.snapshot();
+        log.debug("Список пользователей для вывода: {}", allUsers);
+        return allUsers;
     }
 
     @Override
     public User create(User newUser) {
         UserValidator.validateNull(newUser);
         UserValidator.validateFormat(newUser);
-        newUser.setId(getNextId());
-        if (Objects.isNull(newUser.getName()) || newUser.getName().isBlank()) {
+        User user = copy(newUser);
+        user.setId(lastId.incrementAndGet());
+        if (Objects.isNull(user.getName()) || user.getName().isBlank()) {
             log.debug(
                     "При создании пользователя получено пусто имя Name пользователя с id = {}, в качестве имени будет использован логин {}",
-                    newUser.getId(), newUser.getLogin());
-            newUser.setName(newUser.getLogin());
+                    user.getId(), user.getLogin());
+            user.setName(user.getLogin());
         }
-        if (Objects.isNull(newUser.getFriends())) {
-            newUser.setFriends(new HashSet<>());
+        if (Objects.isNull(user.getFriends())) {
+            user.setFriends(new SortedLongSet());
         }
-        users.put(newUser.getId(), newUser);
-        log.info("Пользователь {} добавлен", newUser);
-        return newUser;
+        User created = users.insert(user.getId(), user, stored -> {
+            logMutation(out -> {
+                out.writeByte(USER);
+                writeUser(out, stored);
+            });
+            return copy(stored);
+        });
+        log.info("Пользователь {} добавлен", created);
+        return created;
     }
 
     @Override
     public User update(User updUser) {
-        if (!users.containsKey(updUser.getId())) {
-            String idNotFound = String.format("Пользователь с id = %d не найден", updUser.getId());
-            log.warn(idNotFound);
-            throw new NotFoundException(idNotFound);
-        }
         UserValidator.validateFormat(updUser);
-        User oldUser = users.get(updUser.getId());
-        oldUser.setLogin(Objects.isNull(updUser.getLogin()) || updUser.getLogin().isBlank() ? oldUser.getLogin() :
-                updUser.getLogin());
-        oldUser.setEmail(Objects.isNull(updUser.getEmail()) || updUser.getEmail().isBlank() ? oldUser.getEmail() :
-                updUser.getEmail());
-        oldUser.setBirthday(Objects.isNull(updUser.getBirthday()) ? oldUser.getBirthday() : updUser.getBirthday());
-        oldUser.setName(Objects.isNull(updUser.getName()) || updUser.getName().isBlank() ? oldUser.getName() :
-                updUser.getName());
-        log.info("Пользователь {} обновлен", updUser);
-        return oldUser;
+        User user = users.mutate(updUser.getId(), oldUser -> {
+            User updated = copy(oldUser);
+            updated.setLogin(Objects.isNull(updUser.getLogin()) || updUser.getLogin().isBlank() ?
+                    oldUser.getLogin() : updUser.getLogin());
+            updated.setEmail(Objects.isNull(updUser.getEmail()) || updUser.getEmail().isBlank() ?
+                    oldUser.getEmail() : updUser.getEmail());
+            updated.setBirthday(
+                    Objects.isNull(updUser.getBirthday()) ? oldUser.getBirthday() : updUser.getBirthday());
+            updated.setName(Objects.isNull(updUser.getName()) || updUser.getName().isBlank() ?
+                    oldUser.getName() : updUser.getName());
+            logMutation(out -> {
+                out.writeByte(USER);
+                writeUser(out, updated);
+            });
+            oldUser.setLogin(updated.getLogin());
+            oldUser.setEmail(updated.getEmail());
+            oldUser.setBirthday(updated.getBirthday());
+            oldUser.setName(updated.getName());
+            return updated;
+        }, null);
+        if (Objects.isNull(user)) {
+            throw notFound(updUser.getId());
+        }
+        log.info("Пользователь {} обновлен", user);
+        return user;
     }
 
+    @Override
     public Optional<User> findUserById(Long id) {
         return Optional.ofNullable(users.get(id));
     }
 
-    private long getNextId() {
-        long currentMaxId = users.keySet()
-                .stream()
-                .mapToLong(id -> id)
-                .max()
-                .orElse(0);
-        return ++currentMaxId;
+    @Override
+    public boolean existsById(Long id) {
+        return users.contains(id);
     }
 
     @Override
     public void addFriend(Long userId, Long friendId) {
-        users.get(friendId).getFriends().remove(friendId);
+        Boolean added = users.mutate(userId, user -> changeFriend(user, friendId, true), null);
+        if (Objects.isNull(added)) {
+            throw notFound(userId);
+        }
+        if (added) {
+            log.info("Пользователь с Id = {} стал другом пользователя с Id = {}", userId, friendId);
+        }
     }
 
     @Override
     public boolean deleteFriend(Long userId, Long friendId) {
-        return !Objects.isNull(users.get(userId).getFriends().remove(friendId));
+        return users.mutate(userId, user -> changeFriend(user, friendId, false), false);
+    }
+
+    @Override
+    public List<User> getFriendsByUserId(Long userId, long afterFriendId, int limit, boolean withFriendIds) {
+        long[] friendIds = friendIds(userId);
+        int position = Arrays.binarySearch(friendIds, afterFriendId);
+        int from = position >= 0 ? position + 1 : -position - 1;
+        List<User> friends = new ArrayList<>(Math.min(limit, friendIds.length - from));
+        for (int i = from; i < friendIds.length && friends.size() < limit; i++) {
+            User friend = users.get(friendIds[i]);
+            if (friend != null) {
+                if (!withFriendIds) {
+                    friend.setFriends(null);
+                }
+                friends.add(friend);
+            }
+        }
+        return friends;
     }
 
     @Override
     public Collection<User> getCommonFriends(Long userId, Long otherId) {
-        return null;
+        long[] friendIds = friendIds(userId);
+        long[] otherFriendIds = friendIds(otherId);
+        List<User> commonFriends = new ArrayList<>();
+        for (int i = 0, j = 0; i < friendIds.length && j < otherFriendIds.length; ) {
+            if (friendIds[i] < otherFriendIds[j]) {
+                i++;
+            } else if (friendIds[i] > otherFriendIds[j]) {
+                j++;
+            } else {
+                User friend = users.get(friendIds[i]);
+                if (friend != null) {
+                    friend.setFriends(null);
+                    commonFriends.add(friend);
+                }
+                i++;
+                j++;
+            }
+        }
+        return commonFriends;
     }
 
     @Override
-    public Set<User> getFriendsByUserId(Long userId) {
-        return null;
+    public List<User> getFriendSuggestions(Long userId, int count) {
+        SortedLongSet friends = SortedLongSet.ofSorted(friendIds(userId));
+        Map<Long, Integer> mutualFriends = new HashMap<>();
+        for (long friendId : friends.toLongArray()) {
+            for (long candidateId : friendIds(friendId)) {
+                if (candidateId != userId && !friends.contains(candidateId)) {
+                    mutualFriends.merge(candidateId, 1, Integer::sum);
+                }
+            }
+        }
+        return mutualFriends.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .map(entry -> {
+                    User user = users.get(entry.getKey());
+                    if (user != null) {
+                        user.setFriends(null);
+                        user.setMutualFriends(entry.getValue());
+                    }
+                    return user;
+                })
+                .filter(Objects::nonNull)
+                .limit(count)
+                .toList();
+    }
+
+    /**
+     * Отсортированные id друзей пользователя на момент чтения.
+     */
+    private long[] friendIds(long userId) {
+        return users.read(userId, user -> user.getFriends().toLongArray(), NO_FRIENDS);
+    }
+
+    private boolean changeFriend(User user, long friendId, boolean added) {
+        boolean changed = added != user.getFriends().contains(friendId);
+        if (changed) {
+            logMutation(out -> {
+                out.writeByte(added ? FRIEND_ADDED : FRIEND_REMOVED);
+                out.writeLong(user.getId());
+                out.writeLong(friendId);
+            });
+            if (added) {
+                user.getFriends().add(friendId);
+            } else {
+                user.getFriends().remove(friendId);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Дописывает изменение в журнал и ждет, пока оно попадет на диск. Вызывается под блокировкой изменяемого
+     * пользователя до самого изменения: если запись не удалась, пользователь не меняется, а другие потоки видят изменение
+     * только после того, как оно стало надежным.
+     */
+    private void logMutation(StoreJournal.Writer record) {
+        if (!Objects.isNull(journal)) {
+            journal.sync(journal.append(record));
+        }
+    }
+
+    private void readSnapshot(DataInput in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            User user = readUser(in);
+            user.setFriends(SortedLongSet.ofSorted(StoreJournal.readIds(in)));
+            users.insert(user.getId(), user, stored -> null);
+        }
     }
 
+    private void replay(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case USER -> {
+                User user = readUser(in);
+                user.setFriends(users.read(user.getId(), stored -> stored.getFriends().copy(), new SortedLongSet()));
+                users.insert(user.getId(), user, stored -> null);
+            }
+            case FRIEND_ADDED, FRIEND_REMOVED -> {
+                long userId = in.readLong();
+                long friendId = in.readLong();
+                users.mutate(userId, user -> type == FRIEND_ADDED ?
+                        user.getFriends().add(friendId) : user.getFriends().remove(friendId), false);
+            }
+            default -> throw new IOException("Неизвестный тип записи журнала пользователей: " + type);
+        }
+    }
+
+    private static void writeUser(DataOutput out, User user) throws IOException {
+        out.writeLong(user.getId());
+        StoreJournal.writeString(out, user.getEmail());
+        StoreJournal.writeString(out, user.getLogin());
+        StoreJournal.writeString(out, user.getName());
+        out.writeLong(Objects.isNull(user.getBirthday()) ? Long.MIN_VALUE : user.getBirthday().toEpochDay());
+    }
+
+    private static User readUser(DataInput in) throws IOException {
+        long id = in.readLong();
+        String email = StoreJournal.readString(in);
+        String login = StoreJournal.readString(in);
+        String name = StoreJournal.readString(in);
+        long birthday = in.readLong();
+        return User.builder()
+                .id(id)
+                .email(email)
+                .login(login)
+                .name(name)
+                .birthday(birthday == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(birthday))
+                .build();
+    }
+
+    private static NotFoundException notFound(long userId) {
+        String idNotFound = String.format("Пользователь с id = %d не найден", userId);
+        log.warn(idNotFound);
+        return new NotFoundException(idNotFound);
+    }
+
+    private static User copy(User user) {
+        return user.toBuilder()
+                .friends(Objects.isNull(user.getFriends()) ? null : user.getFriends().copy())
+                .build();
+    }
+
+    private record Captured(long lsn, List<User> users) {
+    }
 }
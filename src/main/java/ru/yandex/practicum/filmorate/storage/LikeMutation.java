@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.storage;
+
+/**
+ * Добавление (liked = true) или удаление лайка пользователя к фильму.
+ */
+public record LikeMutation(int filmId, long userId, boolean liked) {
+}
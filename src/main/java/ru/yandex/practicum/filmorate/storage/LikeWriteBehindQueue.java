@@ -0,0 +1,225 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Очередь отложенной записи лайков. По умолчанию выключена, и каждое изменение сразу записывается
+ * через {@link FilmLikesWriter}. Во включенном режиме изменения копятся в ограниченном буфере: повторы и пары
+ * лайк/отмена для одной пары (фильм, пользователь) схлопываются до последнего действия, а буфер сбрасывается
+ * пакетом при накоплении batch-size изменений или раз в flush-interval-ms. Пока буфер заполнен, вызывающий
+ * поток ждет. Лайк из буфера виден в выборках только после сброса.
+ */
+@Slf4j
+@Component
+public class LikeWriteBehindQueue {
+    private final FilmLikesWriter likesWriter;
+    private final boolean enabled;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Map<LikeKey, LikeMutation> pending = new LinkedHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedMutations = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+    private ScheduledExecutorService flusher;
+    private boolean running;
+
+    public LikeWriteBehindQueue(FilmLikesWriter likesWriter,
+                                @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                                @Value("${filmorate.likes.write-behind.capacity:10000}") int capacity,
+                                @Value("${filmorate.likes.write-behind.batch-size:500}") int batchSize,
+                                @Value("${filmorate.likes.write-behind.flush-interval-ms:200}") long flushIntervalMillis) {
+        this.likesWriter = likesWriter;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "like-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::drain, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        lock.lock();
+        try {
+            running = true;
+        } finally {
+            lock.unlock();
+        }
+        log.info("Отложенная запись лайков включена: буфер {}, пакет {}, интервал {} мс", capacity, batchSize,
+                flushIntervalMillis);
+    }
+
+    public void submit(LikeMutation mutation) {
+        LikeKey key = new LikeKey(mutation.filmId(), mutation.userId());
+        lock.lock();
+        try {
+            while (running && pending.size() >= capacity && !pending.containsKey(key)) {
+                requestFlush();
+                notFull.await();
+            }
+            if (running) {
+                pending.put(key, mutation);
+                if (pending.size() >= batchSize) {
+                    requestFlush();
+                }
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание места в очереди лайков прервано", e);
+        } finally {
+            lock.unlock();
+        }
+        writeThrough(mutation);
+    }
+
+    public Stats stats() {
+        int queueDepth;
+        lock.lock();
+        try {
+            queueDepth = pending.size();
+        } finally {
+            lock.unlock();
+        }
+        return new Stats(queueDepth, flushes.get(), flushedMutations.get(), lastFlushNanos, maxFlushNanos.get(),
+                totalFlushNanos.get());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        lock.lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        flusher.shutdown();
+        flusher.awaitTermination(flushIntervalMillis * 10, TimeUnit.MILLISECONDS);
+        int drained = 0;
+        for (int flushed = flush(); flushed > 0; flushed = flush()) {
+            drained += flushed;
+        }
+        log.info("Очередь отложенной записи лайков остановлена, при остановке записано изменений: {}", drained);
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        flushRequested.set(false);
+        try {
+            while (flush() > 0) {
+                log.trace("Пакет лайков записан, в очереди осталось {}", stats().queueDepth());
+            }
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать пакет лайков, изменения вернулись в очередь", e);
+        }
+    }
+
+    private int flush() {
+        List<LikeMutation> batch = new ArrayList<>(batchSize);
+        lock.lock();
+        try {
+            Iterator<LikeMutation> iterator = pending.values().iterator();
+            while (batch.size() < batchSize && iterator.hasNext()) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        try {
+            likesWriter.apply(batch);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Пакет лайков нарушает ограничения БД, изменения будут записаны по одному", e);
+            for (LikeMutation mutation : batch) {
+                try {
+                    writeThrough(mutation);
+                } catch (DataIntegrityViolationException violation) {
+                    log.error("Изменение лайка {} отклонено БД и пропущено", mutation, violation);
+                }
+            }
+        } catch (RuntimeException e) {
+            requeue(batch);
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+        lastFlushNanos = elapsed;
+        totalFlushNanos.addAndGet(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        flushes.incrementAndGet();
+        flushedMutations.addAndGet(batch.size());
+        return batch.size();
+    }
+
+    private void writeThrough(LikeMutation mutation) {
+        try {
+            likesWriter.apply(List.of(mutation));
+        } catch (DuplicateKeyException e) {
+            log.debug("Лайк к фильму с id = {} от пользователя с id = {} уже добавлен параллельным запросом",
+                    mutation.filmId(), mutation.userId());
+        }
+    }
+
+    private void requeue(List<LikeMutation> batch) {
+        lock.lock();
+        try {
+            batch.forEach(mutation -> pending.putIfAbsent(new LikeKey(mutation.filmId(), mutation.userId()),
+                    mutation));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public record Stats(int queueDepth, long flushes, long flushedMutations, long lastFlushNanos,
+                        long maxFlushNanos, long totalFlushNanos) {
+    }
+
+    private record LikeKey(int filmId, long userId) {
+    }
+}
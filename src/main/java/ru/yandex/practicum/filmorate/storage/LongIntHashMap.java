@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.storage;
+
+/**
+ * Отображение long -> int на открытой адресации без упаковки ключей и значений. Значения неотрицательные,
+ * удаление не поддерживается.
+ */
+final class LongIntHashMap {
+    private static final long PHI = 0x9E3779B97F4A7C15L;
+
+    private long[] keys;
+    // Значение + 1, 0 - пустая ячейка
+    private int[] values;
+    private int size;
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+    }
+
+    /**
+     * Значение по ключу или -1, если ключа нет.
+     */
+    int get(long key) {
+        int mask = keys.length - 1;
+        for (int index = index(key, mask); values[index] != 0; index = (index + 1) & mask) {
+            if (keys[index] == key) {
+                return values[index] - 1;
+            }
+        }
+        return -1;
+    }
+
+    void put(long key, int value) {
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+        int mask = keys.length - 1;
+        int index = index(key, mask);
+        while (values[index] != 0) {
+            if (keys[index] == key) {
+                values[index] = value + 1;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value + 1;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0) {
+                int index = index(oldKeys[i], mask);
+                while (values[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private static int index(long key, int mask) {
+        long hash = key * PHI;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Настройки журналов хранилищ в памяти. Если filmorate.memory.persistence.dir не задан, хранилища в памяти
+ * ничего не сохраняют на диск. Открытые журналы запоминаются, чтобы метрика показывала журналы, запись
+ * в которые остановилась из-за ошибки.
+ */
+@Component
+public class MemoryPersistence {
+    private final String directory;
+    private final boolean fsync;
+    private final long snapshotIntervalMs;
+    private final List<StoreJournal> journals = new CopyOnWriteArrayList<>();
+
+    public MemoryPersistence(@Value("${filmorate.memory.persistence.dir:}") String directory,
+                             @Value("${filmorate.memory.persistence.fsync:true}") boolean fsync,
+                             @Value("${filmorate.memory.persistence.snapshot-interval-ms:300000}")
+                             long snapshotIntervalMs) {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.snapshotIntervalMs = snapshotIntervalMs;
+    }
+
+    /**
+     * Журнал хранилища name в собственном подкаталоге или пустой Optional, если сохранение выключено.
+     */
+    Optional<StoreJournal> open(String name) {
+        if (directory.isBlank()) {
+            return Optional.empty();
+        }
+        StoreJournal journal = new StoreJournal(Path.of(directory, name), fsync, snapshotIntervalMs);
+        journals.add(journal);
+        return Optional.of(journal);
+    }
+
+    /**
+     * Число журналов, которые после ошибки записи на диск больше не принимают изменения.
+     */
+    public long failedJournals() {
+        return journals.stream().filter(StoreJournal::isFailed).count();
+    }
+}
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Primary;
@@ -10,8 +11,13 @@ import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
+/**
+ * Справочник рейтингов MPA, загружаемый при старте в массив по id. После изменения таблицы
+ * справочник нужно перечитать через {@link #reload()}.
+ */
 @Repository
 @Primary
 @RequiredArgsConstructor
@@ -20,21 +26,32 @@ public class RatingDbStorage implements RatingStorage {
 
     private final JdbcTemplate jdbc;
     private final RatingRowMapper ratingMapper;
+    private volatile Rating[] ratingsById = new Rating[0];
+    private volatile List<Rating> ratings = List.of();
+
+    @PostConstruct
+    public void reload() {
+        String query = "SELECT * FROM rating ORDER BY id";
+        List<Rating> loaded = List.copyOf(jdbc.query(query, ratingMapper));
+        Rating[] byId = new Rating[loaded.isEmpty() ? 0 : loaded.getLast().getId() + 1];
+        loaded.forEach(rating -> byId[rating.getId()] = rating);
+        ratingsById = byId;
+        ratings = loaded;
+        log.info("Справочник рейтингов загружен, записей: {}", loaded.size());
+    }
 
     @Override
     public Collection<Rating> findAll() {
-        String query = "SELECT * FROM rating";
-        return jdbc.query(query, ratingMapper);
+        return ratings;
     }
 
     @Override
     public Optional<Rating> findRatingById(Integer id) {
-        String query = "SELECT * FROM rating WHERE id = ?";
-        List<Rating> result = jdbc.query(query, ratingMapper, id);
-        if (result.size() == 0) {
+        Rating[] byId = ratingsById;
+        if (Objects.isNull(id) || id < 0 || id >= byId.length) {
             return Optional.empty();
         }
-        return Optional.ofNullable(result.getFirst());
+        return Optional.ofNullable(byId[id]);
     }
 
 }
@@ -0,0 +1,536 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Граф дружбы в памяти в формате CSR: пользователи пронумерованы плотными номерами вершин, списки друзей
+ * всех вершин лежат подряд в одном массиве int, а offsets[v]..offsets[v + 1] - границы списка вершины v.
+ * Списки отсортированы по номеру вершины. Изменения сначала записываются в дельту поверх CSR - короткие
+ * отсортированные списки добавленных и удаленных друзей изменившихся вершин, - а чтение сливает CSR с дельтой.
+ * Раз в merge-interval-ms фоновый поток собирает из CSR и дельты новый CSR, не блокируя чтение; если дельта
+ * выросла больше max-delta-edges, она сливается сразу при записи. Граф загружается из БД при первом
+ * обращении или вызовом {@link #load()} и дальше обновляется вместе с user_friends. Изменения применяются
+ * после коммита; флаг загрузки проверяется под блокировкой записи, поэтому изменение, пришедшее во время
+ * загрузки, дожидается ее и применяется поверх, а до загрузки пропускается - загрузка прочитает его из БД.
+ */
+@Slf4j
+@Component
+public class SocialGraph {
+    private static final int LOAD_FETCH_SIZE = 10000;
+    private static final int[] NO_EDGES = new int[0];
+    private static final long[] NO_IDS = new long[0];
+
+    private final JdbcTemplate jdbc;
+    private final long mergeIntervalMillis;
+    private final int maxDeltaEdges;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private LongIntHashMap vertices = new LongIntHashMap(1024);
+    private long[] userIds = new long[1024];
+    private int vertexCount;
+    // CSR покрывает вершины [0, csr.vertexCount()), у более новых вершин есть только дельта
+    private Csr csr = new Csr(new int[]{0}, NO_EDGES, 0);
+    private int[][] added = new int[1024][];
+    private int[][] removed = new int[1024][];
+    private int deltaSize;
+    private long version;
+    private volatile boolean loaded;
+    private ScheduledExecutorService merger;
+
+    public SocialGraph(JdbcTemplate jdbc,
+                       @Value("${filmorate.social-graph.merge-interval-ms:1000}") long mergeIntervalMillis,
+                       @Value("${filmorate.social-graph.max-delta-edges:100000}") int maxDeltaEdges) {
+        this.jdbc = jdbc;
+        this.mergeIntervalMillis = mergeIntervalMillis;
+        this.maxDeltaEdges = maxDeltaEdges;
+    }
+
+    @PostConstruct
+    public void start() {
+        merger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "social-graph-merge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        merger.scheduleWithFixedDelay(() -> {
+            try {
+                merge();
+            } catch (RuntimeException e) {
+                log.error("Не удалось слить дельту графа дружбы", e);
+            }
+        }, mergeIntervalMillis, mergeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        merger.shutdownNow();
+    }
+
+    public void load() {
+        ensureLoaded();
+    }
+
+    /**
+     * Загружает граф из БД заново, например после изменения user_friends в обход хранилища.
+     */
+    public void reload() {
+        lock.writeLock().lock();
+        try {
+            vertices = new LongIntHashMap(Math.max(1024, vertexCount));
+            userIds = new long[userIds.length];
+            added = new int[added.length][];
+            removed = new int[removed.length][];
+            vertexCount = 0;
+            version++;
+            loaded = false;
+            ensureLoaded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Id друзей пользователя по возрастанию.
+     */
+    public long[] friendIds(long userId) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            int vertex = vertices.get(userId);
+            return vertex < 0 ? NO_IDS : toSortedUserIds(neighbors(vertex), -1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Id общих друзей двух пользователей по возрастанию.
+     */
+    public long[] commonFriendIds(long userId, long otherId) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            int vertex = vertices.get(userId);
+            int other = vertices.get(otherId);
+            if (vertex < 0 || other < 0) {
+                return NO_IDS;
+            }
+            int[] first = neighbors(vertex);
+            int[] second = neighbors(other);
+            int[] common = new int[Math.min(first.length, second.length)];
+            int size = 0;
+            for (int i = 0, j = 0; i < first.length && j < second.length; ) {
+                if (first[i] < second[j]) {
+                    i++;
+                } else if (first[i] > second[j]) {
+                    j++;
+                } else {
+                    common[size++] = first[i];
+                    i++;
+                    j++;
+                }
+            }
+            return toSortedUserIds(common, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * До count пользователей, которые не являются друзьями userId, но есть в списках его друзей, по убыванию
+     * числа общих друзей, при равенстве - по порядку регистрации.
+     */
+    public Suggestions suggest(long userId, int count) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            int vertex = vertices.get(userId);
+            if (vertex < 0 || count <= 0) {
+                return Suggestions.EMPTY;
+            }
+            int[] friends = neighbors(vertex);
+            int total = 0;
+            for (int friend : friends) {
+                total += degreeBound(friend);
+            }
+            int[] candidates = new int[total];
+            int size = 0;
+            for (int friend : friends) {
+                size = copyNeighbors(friend, candidates, size);
+            }
+            Arrays.sort(candidates, 0, size);
+            long[] heap = new long[count];
+            int heapSize = 0;
+            for (int i = 0; i < size; ) {
+                int candidate = candidates[i];
+                int run = i;
+                while (i < size && candidates[i] == candidate) {
+                    i++;
+                }
+                if (candidate == vertex || Arrays.binarySearch(friends, candidate) >= 0) {
+                    continue;
+                }
+                // Старшие 32 бита - число общих друзей, младшие - обратный номер вершины для раннего порядка
+                long key = ((long) (i - run) << 32) | (Integer.MAX_VALUE - candidate);
+                if (heapSize < count) {
+                    heap[heapSize] = key;
+                    siftUp(heap, heapSize++);
+                } else if (key > heap[0]) {
+                    heap[0] = key;
+                    siftDown(heap, heapSize);
+                }
+            }
+            Arrays.sort(heap, 0, heapSize);
+            long[] suggestedIds = new long[heapSize];
+            int[] mutualFriends = new int[heapSize];
+            for (int i = 0; i < heapSize; i++) {
+                long key = heap[heapSize - 1 - i];
+                suggestedIds[i] = userIds[Integer.MAX_VALUE - (int) key];
+                mutualFriends[i] = (int) (key >>> 32);
+            }
+            return new Suggestions(suggestedIds, mutualFriends);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Заводит вершину нового пользователя, чтобы номера вершин шли в порядке регистрации.
+     */
+    public void addUser(long userId) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            vertexOf(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addEdge(long userId, long friendId) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            int vertex = vertexOf(userId);
+            int friend = vertexOf(friendId);
+            if (contains(removed[vertex], friend)) {
+                removed[vertex] = without(removed[vertex], friend);
+            } else if (!contains(added[vertex], friend) && !csrContains(vertex, friend)) {
+                added[vertex] = with(added[vertex], friend);
+            } else {
+                return;
+            }
+            onDeltaChanged();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeEdge(long userId, long friendId) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            int vertex = vertices.get(userId);
+            int friend = vertices.get(friendId);
+            if (vertex < 0 || friend < 0) {
+                return;
+            }
+            if (contains(added[vertex], friend)) {
+                added[vertex] = without(added[vertex], friend);
+            } else if (csrContains(vertex, friend) && !contains(removed[vertex], friend)) {
+                removed[vertex] = with(removed[vertex], friend);
+            } else {
+                return;
+            }
+            onDeltaChanged();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Собирает новый CSR под блокировкой чтения, поэтому чтение не останавливается, и подменяет им старый,
+     * если за время сборки граф не менялся. Иначе слияние откладывается до следующего запуска.
+     */
+    void merge() {
+        if (!loaded) {
+            return;
+        }
+        long startVersion;
+        Csr merged;
+        lock.readLock().lock();
+        try {
+            if (deltaSize == 0) {
+                return;
+            }
+            startVersion = version;
+            merged = rebuild();
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            if (version == startVersion) {
+                install(merged);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void onDeltaChanged() {
+        deltaSize++;
+        version++;
+        if (deltaSize > maxDeltaEdges) {
+            install(rebuild());
+        }
+    }
+
+    private Csr rebuild() {
+        long start = System.nanoTime();
+        int[] offsets = new int[vertexCount + 1];
+        // Каждое изменение дельты добавляет не больше одного ребра
+        int[] edges = new int[csr.edges().length + deltaSize];
+        int size = 0;
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            size = copyNeighbors(vertex, edges, size);
+            offsets[vertex + 1] = size;
+        }
+        log.debug("Дельта графа дружбы слита: вершин {}, ребер {}, изменений {}, {} мкс", vertexCount, size,
+                deltaSize, (System.nanoTime() - start) / 1000);
+        return new Csr(offsets, Arrays.copyOf(edges, size), vertexCount);
+    }
+
+    private void install(Csr merged) {
+        csr = merged;
+        added = new int[added.length][];
+        removed = new int[removed.length][];
+        deltaSize = 0;
+    }
+
+    private int[] neighbors(int vertex) {
+        int[] friends = new int[degreeBound(vertex)];
+        int size = copyNeighbors(vertex, friends, 0);
+        return size == friends.length ? friends : Arrays.copyOf(friends, size);
+    }
+
+    private int degreeBound(int vertex) {
+        return csrEnd(vertex) - csrStart(vertex) + (added[vertex] == null ? 0 : added[vertex].length);
+    }
+
+    /**
+     * Сливает отрезок CSR вершины с ее дельтой и пишет друзей по возрастанию номера в target с позиции position.
+     * Возвращает позицию после последнего записанного.
+     */
+    private int copyNeighbors(int vertex, int[] target, int position) {
+        int[] edges = csr.edges();
+        int[] extra = added[vertex] == null ? NO_EDGES : added[vertex];
+        int[] skip = removed[vertex];
+        int i = csrStart(vertex);
+        int end = csrEnd(vertex);
+        int j = 0;
+        while (i < end || j < extra.length) {
+            if (j == extra.length || (i < end && edges[i] < extra[j])) {
+                int friend = edges[i++];
+                if (skip == null || Arrays.binarySearch(skip, friend) < 0) {
+                    target[position++] = friend;
+                }
+            } else {
+                target[position++] = extra[j++];
+            }
+        }
+        return position;
+    }
+
+    private int csrStart(int vertex) {
+        return vertex < csr.vertexCount() ? csr.offsets()[vertex] : 0;
+    }
+
+    private int csrEnd(int vertex) {
+        return vertex < csr.vertexCount() ? csr.offsets()[vertex + 1] : 0;
+    }
+
+    private boolean csrContains(int vertex, int friend) {
+        return Arrays.binarySearch(csr.edges(), csrStart(vertex), csrEnd(vertex), friend) >= 0;
+    }
+
+    private long[] toSortedUserIds(int[] friends, int size) {
+        int count = size < 0 ? friends.length : size;
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = userIds[friends[i]];
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private int vertexOf(long userId) {
+        int vertex = vertices.get(userId);
+        if (vertex >= 0) {
+            return vertex;
+        }
+        if (vertexCount == userIds.length) {
+            userIds = Arrays.copyOf(userIds, vertexCount * 2);
+            added = Arrays.copyOf(added, vertexCount * 2);
+            removed = Arrays.copyOf(removed, vertexCount * 2);
+        }
+        userIds[vertexCount] = userId;
+        vertices.put(userId, vertexCount);
+        version++;
+        return vertexCount++;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            long start = System.nanoTime();
+            // Вершины нумеруются по возрастанию id, поэтому строки дружбы в порядке user_id идут по порядку вершин
+            jdbc.query(connection -> prepare(connection, "SELECT id FROM users ORDER BY id"),
+                    rs -> {
+                        vertexOf(rs.getLong(1));
+                    });
+            EdgeBuffer buffer = new EdgeBuffer(vertexCount);
+            jdbc.query(connection -> prepare(connection,
+                    "SELECT user_id, user_friend_id FROM user_friends ORDER BY user_id, user_friend_id"), rs -> {
+                        int vertex = vertices.get(rs.getLong(1));
+                        int friend = vertices.get(rs.getLong(2));
+                        if (vertex >= 0 && friend >= 0) {
+                            buffer.add(vertex, friend);
+                        }
+                    });
+            install(buffer.toCsr());
+            loaded = true;
+            log.info("Граф дружбы загружен: пользователей {}, связей {}, {} мс", vertexCount, csr.edges().length,
+                    (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static PreparedStatement prepare(Connection connection, String query) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement(query);
+        ps.setFetchSize(LOAD_FETCH_SIZE);
+        return ps;
+    }
+
+    private static boolean contains(int[] sorted, int value) {
+        return sorted != null && Arrays.binarySearch(sorted, value) >= 0;
+    }
+
+    private static int[] with(int[] sorted, int value) {
+        if (sorted == null) {
+            return new int[]{value};
+        }
+        int insertAt = -Arrays.binarySearch(sorted, value) - 1;
+        int[] result = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, insertAt);
+        result[insertAt] = value;
+        System.arraycopy(sorted, insertAt, result, insertAt + 1, sorted.length - insertAt);
+        return result;
+    }
+
+    private static int[] without(int[] sorted, int value) {
+        if (sorted.length == 1) {
+            return null;
+        }
+        int position = Arrays.binarySearch(sorted, value);
+        int[] result = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        System.arraycopy(sorted, position + 1, result, position, sorted.length - position - 1);
+        return result;
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        long key = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] <= key) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = key;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        long key = heap[0];
+        int index = 0;
+        int child;
+        while ((child = 2 * index + 1) < size) {
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (key <= heap[child]) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = key;
+    }
+
+    /**
+     * Предложения друзей: id пользователей и число общих друзей с тем же индексом.
+     */
+    public record Suggestions(long[] userIds, int[] mutualFriends) {
+        static final Suggestions EMPTY = new Suggestions(new long[0], new int[0]);
+    }
+
+    private record Csr(int[] offsets, int[] edges, int vertexCount) {
+    }
+
+    /**
+     * Собирает CSR из ребер, которые добавляются по неубыванию номера исходной вершины.
+     */
+    private static final class EdgeBuffer {
+        private final int[] offsets;
+        private int[] edges;
+        private int size;
+
+        private EdgeBuffer(int vertexCount) {
+            offsets = new int[vertexCount + 1];
+            edges = new int[Math.max(16, vertexCount)];
+        }
+
+        private void add(int vertex, int friend) {
+            if (size == edges.length) {
+                edges = Arrays.copyOf(edges, size * 2);
+            }
+            edges[size++] = friend;
+            offsets[vertex + 1]++;
+        }
+
+        private Csr toCsr() {
+            for (int i = 1; i < offsets.length; i++) {
+                offsets[i] += offsets[i - 1];
+            }
+            return new Csr(offsets, Arrays.copyOf(edges, size), offsets.length - 1);
+        }
+    }
+}
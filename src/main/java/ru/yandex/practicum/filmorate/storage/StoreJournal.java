@@ -0,0 +1,510 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Журнал изменений и снимки хранилища в памяти в одном каталоге.
+ * <p>
+ * Каждое изменение получает возрастающий номер (LSN) и дописывается в конец текущего сегмента журнала
+ * journal-&lt;первый LSN&gt;.log в виде записи [длина][LSN][данные][CRC32]. Запись сначала попадает в буфер
+ * в памяти, а поток сброса пишет накопленный буфер в {@link FileChannel} и вызывает force одним вызовом
+ * на всю пачку (group commit): пока идет fsync, следующие изменения копятся для следующей пачки.
+ * {@link #sync()} ждет, пока на диск попадут все записи, добавленные до вызова. Если запись на диск не удалась,
+ * журнал остается недоступным до перезапуска: новые записи и ожидание отклоняются, а {@link #isFailed()}
+ * возвращает true.
+ * <p>
+ * Снимок snapshot-&lt;LSN&gt;.bin содержит состояние на момент записи с этим LSN и контрольную сумму.
+ * Перед снимком журнал переключается на новый сегмент, а после записи снимка старые сегменты и снимки
+ * удаляются. При старте загружается последний снимок и применяются записи журнала после него; недописанная
+ * запись в конце последнего сегмента (сбой во время записи) отбрасывается.
+ */
+@Slf4j
+final class StoreJournal implements Closeable {
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final int SNAPSHOT_MAGIC = 0x464C4D53;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int RECORD_OVERHEAD = Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    private final Path directory;
+    private final boolean fsync;
+    private final long snapshotIntervalMs;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasPending = lock.newCondition();
+    private final Condition durableChanged = lock.newCondition();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(IO_BUFFER_SIZE);
+    private ByteArrayOutputStream flushing = new ByteArrayOutputStream(IO_BUFFER_SIZE);
+    private FileChannel segment;
+    private volatile long appendedLsn;
+    private volatile long durableLsn;
+    private volatile long snapshotLsn;
+    private volatile IOException failure;
+    private boolean closed;
+    private Thread flusher;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Запись журнала или содержимое снимка.
+     */
+    interface Writer {
+        void write(DataOutput out) throws IOException;
+    }
+
+    interface Reader {
+        void read(DataInput in) throws IOException;
+    }
+
+    StoreJournal(Path directory, boolean fsync, long snapshotIntervalMs) {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.snapshotIntervalMs = snapshotIntervalMs;
+    }
+
+    /**
+     * Загружает последний снимок в snapshotReader, передает replay записи журнала после него и открывает
+     * новый сегмент для записи. Возвращает LSN последней восстановленной записи.
+     */
+    long recover(Reader snapshotReader, Reader replay) {
+        try {
+            Files.createDirectories(directory);
+            for (Path temporary : files(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX + ".tmp")) {
+                Files.delete(temporary);
+            }
+            List<Path> snapshots = files(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+            if (!snapshots.isEmpty()) {
+                snapshotLsn = readSnapshot(snapshots.getLast(), snapshotReader);
+            }
+            long lastLsn = snapshotLsn;
+            List<Path> segments = files(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+            int replayed = 0;
+            for (int i = 0; i < segments.size(); i++) {
+                long[] counters = replaySegment(segments.get(i), i == segments.size() - 1, lastLsn, replay);
+                lastLsn = counters[0];
+                replayed += (int) counters[1];
+            }
+            appendedLsn = lastLsn;
+            durableLsn = lastLsn;
+            segment = openSegment(lastLsn + 1);
+            flusher = Thread.ofPlatform().daemon().name("journal-flush-" + directory.getFileName())
+                    .start(this::flushLoop);
+            log.info("Журнал {} восстановлен: снимок на LSN {}, применено записей {}, последний LSN {}",
+                    directory, snapshotLsn, replayed, lastLsn);
+            return lastLsn;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось восстановить журнал " + directory, e);
+        }
+    }
+
+    /**
+     * Дописывает запись в буфер журнала и возвращает ее LSN. Запись становится надежной после {@link #sync()}.
+     */
+    long append(Writer record) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+        try {
+            record.write(new DataOutputStream(payload));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] bytes = payload.toByteArray();
+        lock.lock();
+        try {
+            checkOpen();
+            long lsn = appendedLsn + 1;
+            CRC32 crc = new CRC32();
+            crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, lsn));
+            crc.update(bytes);
+            DataOutputStream out = new DataOutputStream(pending);
+            out.writeInt(bytes.length);
+            out.writeLong(lsn);
+            out.write(bytes);
+            out.writeInt((int) crc.getValue());
+            appendedLsn = lsn;
+            hasPending.signal();
+            return lsn;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ждет, пока все добавленные к этому моменту записи попадут на диск.
+     */
+    void sync() {
+        sync(appendedLsn);
+    }
+
+    /**
+     * Ждет, пока на диск попадут записи до LSN lsn включительно.
+     */
+    void sync(long lsn) {
+        if (durableLsn >= lsn) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (durableLsn < lsn) {
+                checkOpen();
+                durableChanged.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Сбрасывает буфер и начинает новый сегмент. Вызывается, когда новые записи не добавляются, и возвращает
+     * LSN последней записи старых сегментов.
+     */
+    long rollover() {
+        sync();
+        lock.lock();
+        try {
+            checkOpen();
+            segment.close();
+            segment = openSegment(appendedLsn + 1);
+            return appendedLsn;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Остановлен ли поток сброса из-за ошибки записи на диск.
+     */
+    boolean isFailed() {
+        return failure != null;
+    }
+
+    /**
+     * Нужен ли снимок: были ли записи после предыдущего.
+     */
+    boolean hasChangesSinceSnapshot() {
+        return appendedLsn > snapshotLsn;
+    }
+
+    /**
+     * Записывает снимок состояния на LSN lsn во временный файл, атомарно переименовывает его и удаляет
+     * сегменты и снимки, которые он покрывает.
+     */
+    void writeSnapshot(long lsn, Writer content) {
+        long start = System.nanoTime();
+        Path target = directory.resolve(SNAPSHOT_PREFIX + number(lsn) + SNAPSHOT_SUFFIX);
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                CheckedOutputStream checked = new CheckedOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), IO_BUFFER_SIZE), new CRC32());
+                DataOutputStream out = new DataOutputStream(checked);
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(lsn);
+                content.write(out);
+                out.writeInt((int) checked.getChecksum().getValue());
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory();
+            snapshotLsn = lsn;
+            for (Path snapshot : files(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+                if (firstNumber(snapshot, SNAPSHOT_PREFIX) < lsn) {
+                    Files.delete(snapshot);
+                }
+            }
+            for (Path oldSegment : files(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+                if (firstNumber(oldSegment, SEGMENT_PREFIX) <= lsn) {
+                    Files.delete(oldSegment);
+                }
+            }
+            log.info("Снимок {} записан: LSN {}, {} байт, {} мс", directory, lsn, Files.size(target),
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать снимок " + target, e);
+        }
+    }
+
+    /**
+     * Запускает снимки раз в snapshotIntervalMs; 0 отключает периодические снимки.
+     */
+    void scheduleSnapshots(Runnable snapshot) {
+        if (snapshotIntervalMs <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon()
+                .name("journal-snapshot-" + directory.getFileName()).factory());
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot.run();
+            } catch (RuntimeException e) {
+                log.error("Не удалось записать снимок {}", directory, e);
+            }
+        }, snapshotIntervalMs, snapshotIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            while (durableLsn < appendedLsn && failure == null) {
+                durableChanged.awaitUninterruptibly();
+            }
+            closed = true;
+            hasPending.signalAll();
+            durableChanged.signalAll();
+            if (segment != null) {
+                segment.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeIds(DataOutput out, long[] ids) throws IOException {
+        out.writeInt(ids.length);
+        for (long id : ids) {
+            out.writeLong(id);
+        }
+    }
+
+    static long[] readIds(DataInput in) throws IOException {
+        long[] ids = new long[in.readInt()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = in.readLong();
+        }
+        return ids;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            ByteArrayOutputStream batch;
+            FileChannel channel;
+            long batchLsn;
+            lock.lock();
+            try {
+                while (pending.size() == 0 && !closed) {
+                    hasPending.awaitUninterruptibly();
+                }
+                if (closed) {
+                    return;
+                }
+                batch = pending;
+                pending = flushing;
+                flushing = batch;
+                channel = segment;
+                batchLsn = appendedLsn;
+            } finally {
+                lock.unlock();
+            }
+            IOException error = null;
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (fsync) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                error = e;
+                log.error("Не удалось записать журнал {}", directory, e);
+            }
+            lock.lock();
+            try {
+                batch.reset();
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableLsn = batchLsn;
+                }
+                durableChanged.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (failure != null) {
+            throw new UncheckedIOException("Журнал " + directory + " недоступен для записи", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Журнал " + directory + " закрыт");
+        }
+    }
+
+    private long readSnapshot(Path file, Reader reader) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(input, IO_BUFFER_SIZE),
+                    new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Неизвестный формат снимка " + file);
+            }
+            long lsn = in.readLong();
+            reader.read(in);
+            int expected = (int) checked.getChecksum().getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("Контрольная сумма снимка " + file + " не совпадает");
+            }
+            return lsn;
+        }
+    }
+
+    /**
+     * Применяет записи сегмента с LSN больше afterLsn. Недописанный хвост последнего сегмента обрезается.
+     * Возвращает LSN последней записи и число примененных записей.
+     */
+    private long[] replaySegment(Path file, boolean last, long afterLsn, Reader replay) throws IOException {
+        long lastLsn = afterLsn;
+        long applied = 0;
+        long position = 0;
+        long size = Files.size(file);
+        try (InputStream input = Files.newInputStream(file)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(input, IO_BUFFER_SIZE));
+            while (position < size) {
+                byte[] payload = readRecord(in, size - position);
+                if (payload == null) {
+                    if (!last) {
+                        throw new IOException("Журнал " + file + " поврежден на позиции " + position);
+                    }
+                    log.warn("Недописанная запись в конце журнала {} на позиции {} отброшена", file, position);
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                        channel.truncate(position);
+                        channel.force(true);
+                    }
+                    break;
+                }
+                position += RECORD_OVERHEAD + payload.length - Long.BYTES;
+                long lsn = ByteBuffer.wrap(payload).getLong();
+                if (lsn > lastLsn) {
+                    replay.read(new DataInputStream(
+                            new ByteArrayInputStream(payload, Long.BYTES, payload.length - Long.BYTES)));
+                    lastLsn = lsn;
+                    applied++;
+                }
+            }
+        }
+        return new long[]{lastLsn, applied};
+    }
+
+    /**
+     * Читает запись и возвращает LSN и данные одним массивом или null, если запись недописана или повреждена.
+     */
+    private static byte[] readRecord(DataInputStream in, long remaining) throws IOException {
+        if (remaining < RECORD_OVERHEAD) {
+            return null;
+        }
+        int length = in.readInt();
+        if (length < 0 || length > remaining - RECORD_OVERHEAD) {
+            return null;
+        }
+        byte[] record = new byte[Long.BYTES + length];
+        in.readFully(record);
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return in.readInt() == (int) crc.getValue() ? record : null;
+    }
+
+    private FileChannel openSegment(long firstLsn) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(SEGMENT_PREFIX + number(firstLsn) + SEGMENT_SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        forceDirectory();
+        return channel;
+    }
+
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("fsync каталога {} не поддерживается", directory);
+        }
+    }
+
+    private List<Path> files(String prefix, String suffix) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> path.getFileName().toString().startsWith(prefix)
+                            && path.getFileName().toString().endsWith(suffix))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long firstNumber(Path file, String prefix) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.indexOf('.')));
+    }
+
+    private static String number(long lsn) {
+        return String.format("%020d", lsn);
+    }
+}
@@ -0,0 +1,147 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Сущности в памяти по id для InMemory-хранилищ. Сущности лежат в {@link ConcurrentSkipListMap}, поэтому
+ * страницы и выгрузки по возрастанию id не требуют сортировки. Чтение и изменение одной сущности идут под одной
+ * из STRIPES блокировок, выбранной по id, и не мешают работе с другими сущностями. Наружу сущности отдаются
+ * только копиями, снятыми под той же блокировкой.
+ * Каждое изменение держит разделяемую блокировку снимка, а запросы по всем сущностям берут ее исключительно,
+ * поэтому видят состояние хранилища на один момент времени.
+ */
+final class StripedStore<K extends Comparable<K>, V> {
+    private static final int STRIPES = 64;
+
+    private final ConcurrentSkipListMap<K, V> entities = new ConcurrentSkipListMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private final UnaryOperator<V> copier;
+
+    StripedStore(UnaryOperator<V> copier) {
+        this.copier = copier;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Копия сущности или null, если ее нет.
+     */
+    V get(K id) {
+        return read(id, copier, null);
+    }
+
+    boolean contains(K id) {
+        return entities.containsKey(id);
+    }
+
+    /**
+     * Копии сущностей с id больше afterId, не больше limit, по возрастанию id.
+     */
+    List<V> page(K afterId, int limit) {
+        return page(afterId, limit, copier);
+    }
+
+    /**
+     * То же, что page, но каждая сущность отображается reader под своей блокировкой вместо полного копирования.
+     */
+    <R> List<R> page(K afterId, int limit, Function<V, R> reader) {
+        List<R> page = new ArrayList<>(Math.min(limit, 64));
+        for (K id : entities.tailMap(afterId, false).keySet()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            R entity = read(id, reader, null);
+            if (entity != null) {
+                page.add(entity);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Добавляет сущность или заменяет сущность с тем же id; хранилище становится ее владельцем.
+     * before выполняется над сущностью под теми же блокировками до того, как она станет видна другим потокам;
+     * если before бросает исключение, сущность не добавляется.
+     */
+    <R> R insert(K id, V entity, Function<V, R> before) {
+        snapshotLock.readLock().lock();
+        ReentrantLock stripe = stripe(id);
+        stripe.lock();
+        try {
+            R result = before.apply(entity);
+            entities.put(id, entity);
+            return result;
+        } finally {
+            stripe.unlock();
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Выполняет reader над сущностью под ее блокировкой; ссылки на саму сущность из результата не возвращаются.
+     */
+    <R> R read(K id, Function<V, R> reader, R ifAbsent) {
+        ReentrantLock stripe = stripe(id);
+        stripe.lock();
+        try {
+            V entity = entities.get(id);
+            return entity == null ? ifAbsent : reader.apply(entity);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Изменяет сущность под ее блокировкой и блокировкой снимка в разделяемом режиме. Читатели сущности ждут
+     * окончания mutation, поэтому не видят изменение, пока mutation не вернется.
+     */
+    <R> R mutate(K id, Function<V, R> mutation, R ifAbsent) {
+        snapshotLock.readLock().lock();
+        try {
+            return read(id, mutation, ifAbsent);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Выполняет запрос над согласованным состоянием всех сущностей в порядке id. Изменения на время запроса
+     * блокируются, поэтому результат должен содержать только копии.
+     */
+    <R> R query(Function<Collection<V>, R> query) {
+        snapshotLock.writeLock().lock();
+        try {
+            return query.apply(entities.values());
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Копии всех сущностей на один момент времени по возрастанию id.
+     */
+    List<V> snapshot() {
+        return snapshot(copier);
+    }
+
+    /**
+     * Результаты reader для всех сущностей на один момент времени по возрастанию id.
+     */
+    <R> List<R> snapshot(Function<V, R> reader) {
+        return query(values -> values.stream().map(reader).toList());
+    }
+
+    private ReentrantLock stripe(K id) {
+        int hash = id.hashCode() * 0x9E3779B9;
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+}
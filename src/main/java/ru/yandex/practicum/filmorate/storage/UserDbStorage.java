@@ -1,11 +1,13 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.annotation.Primary;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.SortedLongSet;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.mappers.UserExtractor;
 import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
@@ -13,21 +15,30 @@ import ru.yandex.practicum.filmorate.validation.UserValidator;
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * Хранилище пользователей в БД. При filmorate.users.storage=graph через него пишет {@link GraphUserStorage}.
+ */
 @Repository
-@Primary
+@ConditionalOnExpression("'${filmorate.users.storage:db}' matches 'db|graph'")
 @RequiredArgsConstructor
 @Slf4j
 public class UserDbStorage implements UserStorage {
     private final JdbcTemplate jdbc;
     private final UserRowMapper userRowMapper;
     private final UserExtractor userExtractor;
+    private final Cache<Long, User> userCache;
+    private final FriendGraph friendGraph;
+    private final SocialGraph socialGraph;
 
     @Override
     public Collection<User> findAll() {
@@ -36,12 +47,23 @@ public class UserDbStorage implements UserStorage {
         return jdbc.query(query, userExtractor);
     }
 
-    public Set<User> getFriendsByUserId(Long userId) {
-        String query = "SELECT u.*, uf2.user_friend_id FROM users u " +
-                "JOIN user_friends uf ON u.id = uf.user_friend_id " +
-                "LEFT JOIN user_friends uf2 ON u.id = uf2.user_id " +
-                "WHERE uf.user_id = ?";
-        return new HashSet<>(jdbc.query(query, userExtractor, userId));
+    /**
+     * Друзья читаются одним проходом по индексу (user_id, user_friend_id) от afterFriendId, а списки их друзей,
+     * если нужны, берутся из {@link FriendGraph} одним пакетным запросом для отсутствующих в кэше.
+     * Страница id друзей выбирается в подзапросе: в плоском JOIN с условием на диапазон user_friend_id H2
+     * начинает с полного прохода по users и обходит индекс user_friend_id для каждой строки.
+     */
+    @Override
+    public List<User> getFriendsByUserId(Long userId, long afterFriendId, int limit, boolean withFriendIds) {
+        String query = "SELECT u.* FROM (SELECT user_friend_id FROM user_friends " +
+                "WHERE user_id = ? AND user_friend_id > ? ORDER BY user_friend_id LIMIT ?) uf " +
+                "JOIN users u ON u.id = uf.user_friend_id ORDER BY u.id";
+        List<User> friends = jdbc.query(query, userRowMapper, userId, afterFriendId, limit);
+        if (withFriendIds && !friends.isEmpty()) {
+            Map<Long, long[]> friendIds = friendGraph.friendIds(friends.stream().map(User::getId).toList());
+            friends.forEach(friend -> friend.setFriends(SortedLongSet.ofSorted(friendIds.get(friend.getId()))));
+        }
+        return friends;
     }
 
     @Override
@@ -62,6 +84,7 @@ public class UserDbStorage implements UserStorage {
         }, keyHolder);
         Long id = keyHolder.getKeyAs(Long.class);
         if (id != null) {
+            AfterCommit.run(() -> socialGraph.addUser(id));
             log.info("Пользователь {} добавлен", newUser);
             return User.builder()
                     .id(id)
@@ -86,6 +109,7 @@ public class UserDbStorage implements UserStorage {
                 updUser.getName(),
                 updUser.getBirthday(),
                 updUser.getId());
+        CacheInvalidation.invalidate(userCache, updUser.getId());
         if (rowsUpdated == 0) {
             throw new RuntimeException("Не удалось обновить данные");
         } else {
@@ -96,15 +120,24 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public Optional<User> findUserById(Long id) {
+        return Optional.ofNullable(userCache.get(id, this::loadUserById)).map(UserDbStorage::copy);
+    }
+
+    private User loadUserById(Long id) {
         String query = "SELECT * FROM users WHERE id = ?";
         List<User> result = jdbc.query(query, userRowMapper, id);
         if (result.size() == 0) {
-            return Optional.empty();
+            return null;
         }
         User user = result.getFirst();
-        Set<User> friends = new HashSet<>(getFriendsByUserId(user.getId()));
-        user.setFriends(friends.stream().map(User::getId).collect(Collectors.toSet()));
-        return Optional.of(user);
+        user.setFriends(SortedLongSet.ofSorted(friendGraph.friendIds(id)));
+        return user;
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return Boolean.TRUE.equals(
+                jdbc.queryForObject("SELECT EXISTS(SELECT 1 FROM users WHERE id = ?)", Boolean.class, id));
     }
 
     @Override
@@ -112,7 +145,10 @@ public class UserDbStorage implements UserStorage {
         String sqlQuery =
                 "MERGE INTO user_friends (user_id, user_friend_id) KEY (user_id, user_friend_id) VALUES (?, ?)";
         int rowsMerged = jdbc.update(sqlQuery, userId, friendId);
+        CacheInvalidation.invalidate(userCache, userId);
+        friendGraph.invalidate(userId);
         if (rowsMerged > 0) {
+            AfterCommit.run(() -> socialGraph.addEdge(userId, friendId));
             log.info("Пользователь с Id = {} стал другом пользователя с Id = {}", userId,
                     friendId);
         }
@@ -122,18 +158,51 @@ public class UserDbStorage implements UserStorage {
     public boolean deleteFriend(Long userId, Long friendId) {
         String query = "DELETE FROM user_friends WHERE user_id = ? AND user_friend_id = ?";
         int rowsDeleted = jdbc.update(query, userId, friendId);
+        CacheInvalidation.invalidate(userCache, userId);
+        friendGraph.invalidate(userId);
+        if (rowsDeleted > 0) {
+            AfterCommit.run(() -> socialGraph.removeEdge(userId, friendId));
+        }
         return (rowsDeleted > 0);
     }
 
     @Override
     public Collection<User> getCommonFriends(Long userId, Long otherId) {
-        String query = "SELECT u.*, uf.user_friend_id " +
-                "FROM user_friends uf1 " +
-                "JOIN user_friends uf2 ON uf1.user_friend_id = uf2.user_friend_id " +
-                "JOIN users u ON u.id = uf1.user_friend_id " +
-                "LEFT JOIN user_friends uf ON u.id = uf.user_id " +
-                "WHERE uf1.user_id = ? AND uf2.user_id = ?";
-        return jdbc.query(query, userExtractor, userId, otherId);
+        long[] commonIds = friendGraph.commonFriendIds(userId, otherId);
+        if (commonIds.length == 0) {
+            return List.of();
+        }
+        String query = "SELECT * FROM users WHERE id = ANY(?) ORDER BY id";
+        return jdbc.query(query, userRowMapper, (Object) Arrays.stream(commonIds).boxed().toArray(Long[]::new));
     }
 
+    @Override
+    public List<User> getFriendSuggestions(Long userId, int count) {
+        SocialGraph.Suggestions suggestions = socialGraph.suggest(userId, count);
+        if (suggestions.userIds().length == 0) {
+            return List.of();
+        }
+        String query = "SELECT * FROM users WHERE id = ANY(?)";
+        Map<Long, User> usersById = jdbc.query(query, userRowMapper,
+                        (Object) Arrays.stream(suggestions.userIds()).boxed().toArray(Long[]::new)).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        List<User> suggested = new ArrayList<>(suggestions.userIds().length);
+        for (int i = 0; i < suggestions.userIds().length; i++) {
+            User user = usersById.get(suggestions.userIds()[i]);
+            if (user != null) {
+                user.setMutualFriends(suggestions.mutualFriends()[i]);
+                suggested.add(user);
+            }
+        }
+        return suggested;
+    }
+
+    /**
+     * Копия пользователя из кэша, которую вызывающий может изменять, не затрагивая кэш.
+     */
+    private static User copy(User user) {
+        return user.toBuilder()
+                .friends(Objects.isNull(user.getFriends()) ? null : user.getFriends().copy())
+                .build();
+    }
 }
@@ -3,8 +3,8 @@ package ru.yandex.practicum.filmorate.storage;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 
 public interface UserStorage {
     Collection<User> findAll();
@@ -15,12 +15,24 @@ public interface UserStorage {
 
     Optional<User> findUserById(Long id);
 
+    boolean existsById(Long id);
+
     void addFriend(Long userId, Long friendId);
 
     boolean deleteFriend(Long userId, Long friendId);
 
-    Set<User> getFriendsByUserId(Long userId);
+    /**
+     * Страница друзей пользователя по возрастанию id, начиная после afterFriendId. Без withFriendIds
+     * множества друзей самих друзей не заполняются.
+     */
+    List<User> getFriendsByUserId(Long userId, long afterFriendId, int limit, boolean withFriendIds);
 
     Collection<User> getCommonFriends(Long userId, Long otherId);
 
+    /**
+     * До count друзей друзей пользователя, которые еще не его друзья, по убыванию числа общих друзей;
+     * число общих друзей заполнено в mutualFriends.
+     */
+    List<User> getFriendSuggestions(Long userId, int count);
+
 }
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.storage.mappers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.SortedLongSet;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.RatingStorage;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Собирает фильмы из трех независимых выборок, упорядоченных по id фильма: фильмов (film),
+ * жанров (film_id, genre_id) и лайков (film_id, user_id). Курсоры жанров и лайков продвигаются вслед
+ * за курсором фильмов, как при слиянии отсортированных списков, поэтому число прочитанных строк
+ * равно сумме размеров таблиц, а не их произведению, и фильмы без жанров и лайков не теряются.
+ * Каждый фильм передается потребителю сразу после сборки. Названия жанров и рейтинга берутся из справочников.
+ * Без выборки лайков собирается краткий вид фильма: множество лайков не заполняется, остается только их число.
+ */
+@Component
+@RequiredArgsConstructor
+public class FilmMerger {
+    private final GenreStorage genreStorage;
+    private final RatingStorage ratingStorage;
+
+    public void merge(ResultSet films, ResultSet genres, ResultSet likes, Consumer<Film> consumer)
+            throws SQLException {
+        boolean hasGenre = genres.next();
+        boolean hasLike = !Objects.isNull(likes) && likes.next();
+        while (films.next()) {
+            Film film = mapFilm(films);
+            if (!Objects.isNull(likes)) {
+                film.setUserLikes(new SortedLongSet());
+            }
+            int filmId = film.getId();
+            while (hasGenre && genres.getInt("film_id") < filmId) {
+                hasGenre = genres.next();
+            }
+            while (hasGenre && genres.getInt("film_id") == filmId) {
+                int genreId = genres.getInt("genre_id");
+                film.getGenres().add(
+                        genreStorage.findGenreById(genreId).orElseGet(() -> Genre.builder().id(genreId).build()));
+                hasGenre = genres.next();
+            }
+            while (hasLike && likes.getInt("film_id") < filmId) {
+                hasLike = likes.next();
+            }
+            while (hasLike && likes.getInt("film_id") == filmId) {
+                film.getUserLikes().add(likes.getLong("user_id"));
+                hasLike = likes.next();
+            }
+            consumer.accept(film);
+        }
+    }
+
+    private Film mapFilm(ResultSet rs) throws SQLException {
+        int ratingId = rs.getInt("rating_id");
+        return Film.builder()
+                .id(rs.getInt("id"))
+                .name(rs.getString("name"))
+                .duration(rs.getInt("duration"))
+                .mpa(ratingStorage.findRatingById(ratingId).orElseGet(() -> new Rating(ratingId, null)))
+                .description(rs.getString("description"))
+                .releaseDate(rs.getDate("release_date").toLocalDate())
+                .genres(new LinkedHashSet<>())
+                .likeCount(rs.getInt("like_count"))
+                .build();
+    }
+}
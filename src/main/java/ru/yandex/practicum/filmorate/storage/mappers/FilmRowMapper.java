@@ -1,24 +1,57 @@
 package ru.yandex.practicum.filmorate.storage.mappers;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.SortedLongSet;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.RatingStorage;
 
+import java.sql.Array;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
 
+/**
+ * Маппер строки фильма, в которой id жанров и лайков уже собраны в массивы genre_ids и user_likes.
+ * Названия жанров и рейтинга берутся из справочников в памяти.
+ */
 @Component
+@RequiredArgsConstructor
 public class FilmRowMapper implements RowMapper<Film> {
+    private final GenreStorage genreStorage;
+    private final RatingStorage ratingStorage;
+
     @Override
     public Film mapRow(ResultSet resultSet, int rowNum) throws SQLException {
+        Set<Genre> genres = new HashSet<>();
+        for (Object genreId : toArray(resultSet.getArray("genre_ids"))) {
+            int id = ((Number) genreId).intValue();
+            genres.add(genreStorage.findGenreById(id).orElseGet(() -> Genre.builder().id(id).build()));
+        }
+        SortedLongSet userLikes = new SortedLongSet();
+        for (Object userId : toArray(resultSet.getArray("user_likes"))) {
+            userLikes.add(((Number) userId).longValue());
+        }
+        int ratingId = resultSet.getInt("rating_id");
         return Film.builder()
                 .id(resultSet.getInt("id"))
                 .name(resultSet.getString("name"))
                 .duration(resultSet.getInt("duration"))
-                .mpa(new Rating(resultSet.getInt("rating_id"), resultSet.getString("rating_name")))
+                .mpa(ratingStorage.findRatingById(ratingId).orElseGet(() -> new Rating(ratingId, null)))
                 .description(resultSet.getString("description"))
                 .releaseDate(resultSet.getDate("release_date").toLocalDate())
+                .genres(genres)
+                .userLikes(userLikes)
+                .likeCount(resultSet.getInt("like_count"))
                 .build();
     }
+
+    private static Object[] toArray(Array array) throws SQLException {
+        return array == null ? new Object[0] : (Object[]) array.getArray();
+    }
 }
@@ -3,16 +3,15 @@ package ru.yandex.practicum.filmorate.storage.mappers;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.SortedLongSet;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 
 @Component
 public class UserExtractor implements ResultSetExtractor<Collection<User>> {
@@ -24,9 +23,9 @@ public class UserExtractor implements ResultSetExtractor<Collection<User>> {
             if (data.containsKey(userId)) {
                 User user = data.get(userId);
                 if (rs.getLong("user_friend_id") != 0) {
-                    Set<Long> friends = user.getFriends();
+                    SortedLongSet friends = user.getFriends();
                     if (Objects.isNull(friends)) {
-                        friends = new HashSet<>();
+                        friends = new SortedLongSet();
                     }
                     friends.add(rs.getLong("user_friend_id"));
                 }
@@ -39,7 +38,7 @@ public class UserExtractor implements ResultSetExtractor<Collection<User>> {
                         .birthday(rs.getDate("birthday").toLocalDate())
                         .build();
                 if (rs.getLong("user_friend_id") != 0) {
-                    Set<Long> friends = new HashSet<>();
+                    SortedLongSet friends = new SortedLongSet();
                     friends.add(rs.getLong("user_friend_id"));
                     user.setFriends(friends);
                 }
@@ -1,17 +1,17 @@
 --insert into rating(id, name) values
 --(0, 'Unrated');
 
-insert into rating(name) values
-('G'),
-('PG'),
-('PG-13'),
-('R'),
-('NC-17');
+merge into rating(id, name) key(id) values
+(1, 'G'),
+(2, 'PG'),
+(3, 'PG-13'),
+(4, 'R'),
+(5, 'NC-17');
 
-insert into genre(name) values
-('Комедия'),
-('Драма'),
-('Мультфильм'),
-('Триллер'),
-('Документальный'),
-('Боевик');
\ No newline at end of file
+merge into genre(id, name) key(id) values
+(1, 'Комедия'),
+(2, 'Драма'),
+(3, 'Мультфильм'),
+(4, 'Триллер'),
+(5, 'Документальный'),
+(6, 'Боевик');
\ No newline at end of file
@@ -1,54 +1,85 @@
-DROP TABLE IF EXISTS user_friends;
-DROP TABLE IF EXISTS film_userlikes;
-DROP TABLE IF EXISTS users;
-DROP TABLE IF EXISTS film_genre;
-DROP TABLE IF EXISTS film;
-DROP TABLE IF EXISTS genre;
-DROP TABLE IF EXISTS rating;
-
-CREATE TABLE rating(id serial NOT NULL,
+-- Скрипт выполняется при каждом запуске и не удаляет данные: таблицы, колонки и индексы
+-- создаются только если их еще нет, поэтому существующая база доводится до актуальной схемы.
+
+CREATE TABLE IF NOT EXISTS rating(id serial NOT NULL,
                     name varchar NOT NULL,
                     CONSTRAINT rating_pkey PRIMARY KEY (id));
 
-CREATE TABLE genre(id serial NOT NULL,
+CREATE TABLE IF NOT EXISTS genre(id serial NOT NULL,
                    name varchar NOT NULL,
                    CONSTRAINT genre_pkey PRIMARY KEY (id));
 
 
 
-CREATE TABLE film(id serial NOT NULL,
+CREATE TABLE IF NOT EXISTS film(id serial NOT NULL,
                   name varchar NOT NULL,
                   description varchar NOT NULL,
                   release_date date NOT NULL,
                   duration int4 NOT NULL,
                   rating_id int4 NOT NULL,
+                  like_count int4 NOT NULL DEFAULT 0,
                   CONSTRAINT film_pkey PRIMARY KEY (id),
                   CONSTRAINT film_rating_id_fkey FOREIGN KEY (rating_id) REFERENCES rating(id));
 
-CREATE TABLE film_genre(id serial NOT NULL,
+CREATE TABLE IF NOT EXISTS film_genre(id serial NOT NULL,
                         film_id int4 NOT NULL,
                         genre_id int4 NOT NULL,
                         CONSTRAINT film_genre_pkey PRIMARY KEY (id),
                         CONSTRAINT film_genre_film_id_fkey FOREIGN KEY (film_id) REFERENCES film(id),
                         CONSTRAINT film_genre_genre_id_fkey FOREIGN KEY (genre_id) REFERENCES genre(id));
 
-CREATE TABLE users(id bigserial NOT NULL,
+CREATE TABLE IF NOT EXISTS users(id bigserial NOT NULL,
                    email varchar NOT NULL,
                    login varchar NOT NULL,
                    name varchar NOT NULL,
                    birthday date NOT NULL,
                    CONSTRAINT users_pkey PRIMARY KEY (id));
 
-CREATE TABLE film_userlikes(id bigserial NOT NULL,
+CREATE TABLE IF NOT EXISTS film_userlikes(id bigserial NOT NULL,
                             film_id int4 NOT NULL,
                             user_id int8 NOT NULL,
                             CONSTRAINT film_userlikes_pkey PRIMARY KEY (id),
                             CONSTRAINT film_userlikes_film_id_fkey FOREIGN KEY (film_id) REFERENCES film(id),
                             CONSTRAINT film_userlikes_user_id_fkey FOREIGN KEY (user_id) REFERENCES users(id));
 
-CREATE TABLE user_friends(id bigserial NOT NULL,
+CREATE TABLE IF NOT EXISTS user_friends(id bigserial NOT NULL,
                           user_id int8 NOT NULL,
                           user_friend_id int8 NOT NULL,
                           CONSTRAINT user_friends_pkey PRIMARY KEY (id),
                           CONSTRAINT user_friends_user_id_fkey FOREIGN KEY (user_id) REFERENCES users(id),
                           CONSTRAINT user_friends_user_friend_id_fkey FOREIGN KEY (user_friend_id) REFERENCES users(id));
+
+-- Однократные миграции данных. Строка версии заводится до миграции, а после нее отмечается примененной;
+-- каждое изменение данных выбирает строки через соединение с непримененной версией, поэтому при следующих
+-- запусках оно обходится поиском по первичному ключу schema_version без прохода по таблицам.
+CREATE TABLE IF NOT EXISTS schema_version(version int4 NOT NULL,
+                            applied boolean NOT NULL DEFAULT FALSE,
+                            CONSTRAINT schema_version_pkey PRIMARY KEY (version));
+
+-- Миграция 1: базы, созданные до появления счетчика лайков и уникальности связей. Дубли связей удаляются
+-- до создания ограничений уникальности и до пересчета счетчика, остается строка с наименьшим id.
+ALTER TABLE film ADD COLUMN IF NOT EXISTS like_count int4 NOT NULL DEFAULT 0;
+INSERT INTO schema_version(version) SELECT 1 WHERE NOT EXISTS (SELECT 1 FROM schema_version WHERE version = 1);
+DELETE FROM film_genre WHERE id IN (SELECT d.id FROM schema_version v
+    JOIN film_genre d ON v.version = 1 AND NOT v.applied
+    WHERE d.id NOT IN (SELECT MIN(id) FROM film_genre GROUP BY film_id, genre_id));
+DELETE FROM film_userlikes WHERE id IN (SELECT d.id FROM schema_version v
+    JOIN film_userlikes d ON v.version = 1 AND NOT v.applied
+    WHERE d.id NOT IN (SELECT MIN(id) FROM film_userlikes GROUP BY film_id, user_id));
+DELETE FROM user_friends WHERE id IN (SELECT d.id FROM schema_version v
+    JOIN user_friends d ON v.version = 1 AND NOT v.applied
+    WHERE d.id NOT IN (SELECT MIN(id) FROM user_friends GROUP BY user_id, user_friend_id));
+UPDATE film f SET like_count = (SELECT COUNT(*) FROM film_userlikes fu WHERE fu.film_id = f.id)
+WHERE f.id IN (SELECT m.id FROM schema_version v JOIN film m ON v.version = 1 AND NOT v.applied);
+UPDATE schema_version SET applied = TRUE WHERE version = 1;
+
+-- Уникальность связей совпадает с ключами MERGE, индексы по второй колонке нужны для обратных выборок
+ALTER TABLE film_genre ADD CONSTRAINT IF NOT EXISTS film_genre_film_id_genre_id_key UNIQUE (film_id, genre_id);
+ALTER TABLE film_userlikes ADD CONSTRAINT IF NOT EXISTS film_userlikes_film_id_user_id_key UNIQUE (film_id, user_id);
+ALTER TABLE user_friends ADD CONSTRAINT IF NOT EXISTS user_friends_user_id_user_friend_id_key
+    UNIQUE (user_id, user_friend_id);
+
+CREATE INDEX IF NOT EXISTS film_genre_genre_id_idx ON film_genre(genre_id);
+CREATE INDEX IF NOT EXISTS film_userlikes_user_id_idx ON film_userlikes(user_id);
+CREATE INDEX IF NOT EXISTS user_friends_user_friend_id_idx ON user_friends(user_friend_id);
+CREATE INDEX IF NOT EXISTS film_like_count_idx ON film(like_count DESC, id);
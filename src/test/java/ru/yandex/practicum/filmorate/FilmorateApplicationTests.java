@@ -1,34 +1,62 @@
 package ru.yandex.practicum.filmorate;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.transaction.AfterTransaction;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.config.CacheConfig;
+import ru.yandex.practicum.filmorate.dto.ImportErrorDto;
+import ru.yandex.practicum.filmorate.dto.ImportResultDto;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.SortedLongSet;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.ExportService;
+import ru.yandex.practicum.filmorate.service.ExportServiceImpl;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ImportService;
+import ru.yandex.practicum.filmorate.service.ImportServiceImpl;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.ExportDbStorage;
 import ru.yandex.practicum.filmorate.storage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.FilmLikesWriter;
+import ru.yandex.practicum.filmorate.storage.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.FilmRecommendationIndex;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.FriendGraph;
 import ru.yandex.practicum.filmorate.storage.GenreDbStorage;
 import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.ImportDbStorage;
+import ru.yandex.practicum.filmorate.storage.LikeWriteBehindQueue;
 import ru.yandex.practicum.filmorate.storage.RatingDbStorage;
+import ru.yandex.practicum.filmorate.storage.SocialGraph;
 import ru.yandex.practicum.filmorate.storage.UserDbStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
-import ru.yandex.practicum.filmorate.storage.mappers.FilmExtractor;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmMerger;
 import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
 import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
 import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
 import ru.yandex.practicum.filmorate.storage.mappers.UserExtractor;
 import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -41,12 +69,40 @@ import static org.assertj.core.api.Assertions.assertThat;
 @ContextConfiguration(classes = {UserStorage.class, UserDbStorage.class, UserRowMapper.class, UserService.class,
         FilmStorage.class, FilmDbStorage.class, FilmRowMapper.class, FilmService.class, RatingRowMapper.class,
         GenreStorage.class, GenreDbStorage.class, GenreRowMapper.class, RatingDbStorage.class, RatingRowMapper.class,
-        FilmExtractor.class, UserExtractor.class})
+        FilmMerger.class, UserExtractor.class, FilmPopularityIndex.class, FilmRecommendationIndex.class,
+        FilmLikesWriter.class, LikeWriteBehindQueue.class, CacheConfig.class, FriendGraph.class, SocialGraph.class,
+        ImportDbStorage.class, ExportDbStorage.class})
 class FilmorateApplicationTests {
     private final UserDbStorage userStorage;
     private final FilmDbStorage filmDbStorage;
     private final GenreDbStorage genreDbStorage;
     private final RatingDbStorage ratingDbStorage;
+    private final ImportDbStorage importStorage;
+    private final ExportDbStorage exportStorage;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbc;
+    private final Cache<Integer, Film> filmCache;
+    private final Cache<Long, User> userCache;
+    private boolean committed;
+
+    /**
+     * Коммитит тестовую транзакцию, чтобы индексы в памяти получили изменения после коммита, и открывает новую.
+     */
+    private void commit() {
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+        committed = true;
+    }
+
+    @AfterTransaction
+    void deleteCommittedData() {
+        if (committed) {
+            JdbcTestUtils.deleteFromTables(jdbc, "film_userlikes", "user_friends", "film_genre", "film", "users");
+            filmCache.invalidateAll();
+            userCache.invalidateAll();
+        }
+    }
 
     @Test
     public void testFindUserById() {
@@ -119,6 +175,49 @@ class FilmorateApplicationTests {
         assertThat(user).hasFieldOrPropertyWithValue("name", "Updated name");
     }
 
+    @Test
+    public void testExistsById() {
+        User user = userStorage.create(User.builder()
+                .login("login1")
+                .name("name 1")
+                .email("some1@email.com")
+                .birthday(LocalDate.now())
+                .build());
+        Film film = filmDbStorage.create(Film.builder()
+                .name("Name1")
+                .description("Description1")
+                .duration(160)
+                .releaseDate(LocalDate.of(2000, 01, 01))
+                .mpa(Rating.builder().id(1).build())
+                .build());
+
+        Assertions.assertTrue(userStorage.existsById(user.getId()));
+        Assertions.assertFalse(userStorage.existsById(user.getId() + 1));
+        Assertions.assertTrue(filmDbStorage.existsById(film.getId()));
+        Assertions.assertFalse(filmDbStorage.existsById(film.getId() + 1));
+    }
+
+    @Test
+    public void testFindUserByIdAfterAddFriend() {
+        User user = userStorage.create(User.builder()
+                .login("login1")
+                .name("name 1")
+                .email("some1@email.com")
+                .birthday(LocalDate.now())
+                .build());
+        User friend = userStorage.create(User.builder()
+                .login("login2")
+                .name("name 2")
+                .email("some2@email.com")
+                .birthday(LocalDate.now())
+                .build());
+        Assertions.assertTrue(userStorage.findUserById(user.getId()).get().getFriends().isEmpty());
+
+        userStorage.addFriend(user.getId(), friend.getId());
+
+        Assertions.assertEquals(Set.of(friend.getId()), userStorage.findUserById(user.getId()).get().getFriends());
+    }
+
     @Test
     public void testGetFriendsByUserId() {
         User user = userStorage.create(User.builder()
@@ -148,16 +247,17 @@ class FilmorateApplicationTests {
 
         userStorage.addFriend(user.getId(), userFriend1.getId());
         userStorage.addFriend(user.getId(), userFriend2.getId());
-        Assertions.assertEquals(2, userStorage.getFriendsByUserId(user.getId()).size());
-        Assertions.assertTrue(
-                userStorage.getFriendsByUserId(user.getId()).stream().map(User::getId).collect(Collectors.toList())
-                        .contains(userFriend1.getId()));
-        Assertions.assertTrue(
-                userStorage.getFriendsByUserId(user.getId()).stream().map(User::getId).collect(Collectors.toList())
-                        .contains(userFriend2.getId()));
-        Assertions.assertFalse(
-                userStorage.getFriendsByUserId(user.getId()).stream().map(User::getId).collect(Collectors.toList())
-                        .contains(userNotFriend.getId()));
+        List<User> friends = userStorage.getFriendsByUserId(user.getId(), 0, Integer.MAX_VALUE, true);
+        Assertions.assertEquals(List.of(userFriend1.getId(), userFriend2.getId()),
+                friends.stream().map(User::getId).toList());
+        Assertions.assertFalse(friends.stream().map(User::getId).toList().contains(userNotFriend.getId()));
+
+        userStorage.addFriend(userFriend2.getId(), userNotFriend.getId());
+        List<User> secondPage = userStorage.getFriendsByUserId(user.getId(), userFriend1.getId(), 1, true);
+        Assertions.assertEquals(List.of(userFriend2.getId()), secondPage.stream().map(User::getId).toList());
+        Assertions.assertEquals(Set.of(userNotFriend.getId()), secondPage.getFirst().getFriends());
+        Assertions.assertNull(userStorage.getFriendsByUserId(user.getId(), userFriend1.getId(), 1, false)
+                .getFirst().getFriends());
     }
 
     @Test
@@ -221,7 +321,7 @@ class FilmorateApplicationTests {
                 .birthday(LocalDate.now())
                 .build());
         filmDbStorage.addLike(film.getId(), user.getId());
-        film = filmDbStorage.findFilmById(1).get();
+        film = filmDbStorage.findFilmById(film.getId()).get();
 
         Assertions.assertTrue(film.getUserLikes().contains(user.getId()));
     }
@@ -240,7 +340,7 @@ class FilmorateApplicationTests {
                 .duration(160)
                 .releaseDate(LocalDate.of(2000, 01, 01))
                 .mpa(Rating.builder().id(1).build())
-                .userLikes(Set.of(user.getId()))
+                .userLikes(SortedLongSet.of(user.getId()))
                 .build());
         filmDbStorage.deleteLike(film.getId(), user.getId());
         Assertions.assertEquals(0, film.getUserLikes().size());
@@ -248,8 +348,52 @@ class FilmorateApplicationTests {
     }
 
     @Test
-    public void testFindAllFilms() {
+    public void testFindTopPopularFilms() {
+        Film mostPopular = filmDbStorage.create(Film.builder()
+                .name("Most popular")
+                .description("Description")
+                .duration(160)
+                .releaseDate(LocalDate.of(2000, 01, 01))
+                .mpa(Rating.builder().id(1).build())
+                .build());
+        Film lessPopular = filmDbStorage.create(Film.builder()
+                .name("Less popular")
+                .description("Description")
+                .duration(160)
+                .releaseDate(LocalDate.of(2000, 01, 01))
+                .mpa(Rating.builder().id(1).build())
+                .build());
         filmDbStorage.create(Film.builder()
+                .name("Not popular")
+                .description("Description")
+                .duration(160)
+                .releaseDate(LocalDate.of(2000, 01, 01))
+                .mpa(Rating.builder().id(1).build())
+                .build());
+        for (int i = 1; i <= 3; i++) {
+            User user = userStorage.create(User.builder()
+                    .login("login" + i)
+                    .name("name " + i)
+                    .email("some" + i + "@email.com")
+                    .birthday(LocalDate.now())
+                    .build());
+            filmDbStorage.addLike(mostPopular.getId(), user.getId());
+            if (i > 1) {
+                filmDbStorage.addLike(lessPopular.getId(), user.getId());
+            }
+        }
+        filmDbStorage.addLike(mostPopular.getId(), userStorage.findAll().iterator().next().getId());
+        commit();
+
+        Collection<Film> topPopularFilms = filmDbStorage.findTopPopularFilms(2, null, null, null);
+
+        Assertions.assertEquals(List.of(mostPopular.getId(), lessPopular.getId()),
+                topPopularFilms.stream().map(Film::getId).toList());
+    }
+
+    @Test
+    public void testFindAllFilms() {
+        Film withGenre = filmDbStorage.create(Film.builder()
                 .name("Name1")
                 .description("Description1")
                 .duration(160)
@@ -257,18 +401,68 @@ class FilmorateApplicationTests {
                 .mpa(Rating.builder().id(1).build())
                 .genres(Set.of(Genre.builder().id(1).build()))
                 .build());
-        filmDbStorage.create(Film.builder()
+        Film withoutGenres = filmDbStorage.create(Film.builder()
                 .name("Name1")
                 .description("Description1")
                 .duration(160)
                 .releaseDate(LocalDate.of(2000, 01, 01))
                 .mpa(Rating.builder().id(1).build())
-                .genres(Set.of(Genre.builder().id(1).build()))
                 .build());
+        for (int i = 1; i <= 2; i++) {
+            User user = userStorage.create(User.builder()
+                    .login("login" + i)
+                    .name("name " + i)
+                    .email("some" + i + "@email.com")
+                    .birthday(LocalDate.now())
+                    .build());
+            filmDbStorage.addLike(withGenre.getId(), user.getId());
+            filmDbStorage.addLike(withoutGenres.getId(), user.getId());
+        }
 
         Collection<Film> films = filmDbStorage.findAll();
 
-        Assertions.assertEquals(2, films.size());
+        Assertions.assertEquals(List.of(withGenre.getId(), withoutGenres.getId()),
+                films.stream().map(Film::getId).toList());
+        Film first = films.iterator().next();
+        Assertions.assertEquals(1, first.getGenres().size());
+        Assertions.assertEquals("Комедия", first.getGenres().iterator().next().getName());
+        Assertions.assertEquals(2, first.getUserLikes().size());
+        Assertions.assertEquals(2, films.stream().toList().getLast().getUserLikes().size());
+    }
+
+    @Test
+    public void testFindFilmsPage() {
+        Film first = filmDbStorage.create(Film.builder()
+                .name("Name1")
+                .description("Description1")
+                .duration(160)
+                .releaseDate(LocalDate.of(2000, 01, 01))
+                .mpa(Rating.builder().id(1).build())
+                .genres(Set.of(Genre.builder().id(1).build(), Genre.builder().id(2).build()))
+                .build());
+        Film second = filmDbStorage.create(Film.builder()
+                .name("Name2")
+                .description("Description2")
+                .duration(160)
+                .releaseDate(LocalDate.of(2000, 01, 01))
+                .mpa(Rating.builder().id(1).build())
+                .build());
+        Film third = filmDbStorage.create(Film.builder()
+                .name("Name3")
+                .description("Description3")
+                .duration(160)
+                .releaseDate(LocalDate.of(2000, 01, 01))
+                .mpa(Rating.builder().id(1).build())
+                .genres(Set.of(Genre.builder().id(1).build()))
+                .build());
+
+        Collection<Film> firstPage = filmDbStorage.findPage(first.getId() - 1, 2);
+        Collection<Film> secondPage = filmDbStorage.findPage(second.getId(), 2);
+
+        Assertions.assertEquals(List.of(first.getId(), second.getId()),
+                firstPage.stream().map(Film::getId).toList());
+        Assertions.assertEquals(2, firstPage.iterator().next().getGenres().size());
+        Assertions.assertEquals(List.of(third.getId()), secondPage.stream().map(Film::getId).toList());
     }
 
     @Test
@@ -327,6 +521,41 @@ class FilmorateApplicationTests {
                 );
     }
 
+    @Test
+    public void testFindFilmsByIds() {
+        User user = userStorage.create(User.builder()
+                .login("login1")
+                .name("name 1")
+                .email("some1@email.com")
+                .birthday(LocalDate.now())
+                .build());
+        Film first = filmDbStorage.create(Film.builder()
+                .name("Name1")
+                .description("Description1")
+                .duration(160)
+                .releaseDate(LocalDate.of(2000, 01, 01))
+                .mpa(Rating.builder().id(1).build())
+                .genres(Set.of(Genre.builder().id(1).build(), Genre.builder().id(2).build()))
+                .build());
+        Film second = filmDbStorage.create(Film.builder()
+                .name("Name2")
+                .description("Description2")
+                .duration(160)
+                .releaseDate(LocalDate.of(2000, 01, 01))
+                .mpa(Rating.builder().id(2).build())
+                .build());
+        filmDbStorage.addLike(first.getId(), user.getId());
+
+        List<Film> films = List.copyOf(filmDbStorage.findFilmsByIds(List.of(second.getId(), first.getId(), -1)));
+
+        Assertions.assertEquals(List.of(second.getId(), first.getId()), films.stream().map(Film::getId).toList());
+        Assertions.assertEquals("PG", films.get(0).getMpa().getName());
+        Assertions.assertTrue(films.get(0).getGenres().isEmpty());
+        Assertions.assertEquals(Set.of(1, 2),
+                films.get(1).getGenres().stream().map(Genre::getId).collect(Collectors.toSet()));
+        Assertions.assertEquals(Set.of(user.getId()), films.get(1).getUserLikes());
+    }
+
     @Test
     public void testFindAllGenre() {
         Collection<Genre> genres = genreDbStorage.findAll();
@@ -363,5 +592,260 @@ class FilmorateApplicationTests {
                 );
     }
 
-}
 
+    @Test
+    public void testImportFilmsAndLikes() {
+        ImportService importService = new ImportServiceImpl(importStorage, ratingDbStorage, genreDbStorage,
+                Jackson2ObjectMapperBuilder.json().build(), transactionTemplate, 2, "db", "db");
+        User user = userStorage.create(User.builder()
+                .login("login")
+                .name("name")
+                .email("some@email.com")
+                .birthday(LocalDate.now())
+                .build());
+        String films = """
+                {"name":"Film 1","description":"d","releaseDate":"2000-01-01","duration":90,"mpa":{"id":1}}
+                {"name":"","description":"d","releaseDate":"2000-01-01","duration":90,"mpa":{"id":1}}
+
+                {"name":"Film 3","description":"d","releaseDate":"2000-01-01","duration":90,"mpa":{"id":2},                "genres":[{"id":1},{"id":2}]}
+                """;
+
+        ImportResultDto filmsResult = importService.importFilms(
+                new ByteArrayInputStream(films.getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(2, filmsResult.getImported());
+        Assertions.assertEquals(1, filmsResult.getFailed());
+        Assertions.assertEquals(2, filmsResult.getErrors().getFirst().getLine());
+        Assertions.assertEquals(2, filmsResult.getCreatedIds().size());
+        int filmId = filmsResult.getCreatedIds().getLast().intValue();
+        Assertions.assertEquals(Set.of(1, 2), filmDbStorage.findFilmById(filmId).get().getGenres().stream()
+                .map(Genre::getId).collect(Collectors.toSet()));
+
+        String likes = String.format("{\"filmId\":%d,\"userId\":%d}%n{\"filmId\":%d,\"userId\":%d}%n",
+                filmId, user.getId(), Integer.MAX_VALUE, user.getId());
+        ImportResultDto likesResult = importService.importLikes(
+                new ByteArrayInputStream(likes.getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(1, likesResult.getImported());
+        Assertions.assertEquals(List.of(ImportErrorDto.builder().line(2)
+                        .error(String.format("Фильм с id = %d не найден", Integer.MAX_VALUE)).build()),
+                likesResult.getErrors());
+        Assertions.assertEquals(Set.of(user.getId()), filmDbStorage.findFilmById(filmId).get().getUserLikes());
+    }
+
+    @Test
+    public void testExportFilmsAndLikes() {
+        User user = userStorage.create(User.builder()
+                .login("login")
+                .name("name")
+                .email("some@email.com")
+                .birthday(LocalDate.now())
+                .build());
+        Film withGenres = filmDbStorage.create(Film.builder()
+                .name("Film 1")
+                .description("d")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(90)
+                .mpa(new Rating(1, null))
+                .genres(Set.of(Genre.builder().id(2).build(), Genre.builder().id(1).build()))
+                .build());
+        Film withoutGenres = filmDbStorage.create(Film.builder()
+                .name("Film 2")
+                .description("d")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(90)
+                .mpa(new Rating(2, null))
+                .build());
+        filmDbStorage.addLike(withoutGenres.getId(), user.getId());
+
+        ExportService exportService = new ExportServiceImpl(exportStorage, Jackson2ObjectMapperBuilder.json().build());
+        ByteArrayOutputStream films = new ByteArrayOutputStream();
+        exportService.exportFilms(films);
+        List<String> filmLines = films.toString(StandardCharsets.UTF_8).lines().toList();
+        Assertions.assertEquals(2, filmLines.size());
+        assertThat(filmLines.getFirst()).contains("\"name\":\"Film 1\"",
+                "\"genres\":[{\"id\":1,\"name\":\"Комедия\"},{\"id\":2");
+        assertThat(filmLines.getLast()).contains("\"name\":\"Film 2\"", "\"genres\":[]")
+                .doesNotContain("userLikes");
+
+        ByteArrayOutputStream likes = new ByteArrayOutputStream();
+        exportService.exportLikes(likes);
+        Assertions.assertEquals(String.format("{\"filmId\":%d,\"userId\":%d}\n", withoutGenres.getId(),
+                user.getId()), likes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFilmSummariesAndLikesPage() {
+        Film film = filmDbStorage.create(Film.builder()
+                .name("Name1")
+                .description("Description1")
+                .duration(160)
+                .releaseDate(LocalDate.of(2000, 01, 01))
+                .mpa(Rating.builder().id(1).build())
+                .build());
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            User user = userStorage.create(User.builder()
+                    .login("login" + i)
+                    .name("name " + i)
+                    .email("some" + i + "@email.com")
+                    .birthday(LocalDate.now())
+                    .build());
+            filmDbStorage.addLike(film.getId(), user.getId());
+            userIds.add(user.getId());
+        }
+
+        Film summary = filmDbStorage.findAllSummaries().iterator().next();
+        Assertions.assertNull(summary.getUserLikes());
+        Assertions.assertEquals(3, summary.getLikeCount());
+        Assertions.assertEquals(3, filmDbStorage.findSummaryPage(film.getId() - 1, 1).iterator().next()
+                .getLikeCount());
+
+        Assertions.assertEquals(userIds.subList(0, 2), filmDbStorage.findLikes(film.getId(), 0, 2));
+        Assertions.assertEquals(userIds.subList(2, 3), filmDbStorage.findLikes(film.getId(), userIds.get(1), 2));
+    }
+
+    @Test
+    public void testFindTopPopularFilmsByFacets() {
+        Film comedy = filmDbStorage.create(Film.builder()
+                .name("Comedy")
+                .description("Description")
+                .duration(100)
+                .releaseDate(LocalDate.of(2000, 01, 01))
+                .mpa(Rating.builder().id(1).build())
+                .genres(Set.of(Genre.builder().id(1).build()))
+                .build());
+        Film drama = filmDbStorage.create(Film.builder()
+                .name("Drama")
+                .description("Description")
+                .duration(100)
+                .releaseDate(LocalDate.of(2010, 01, 01))
+                .mpa(Rating.builder().id(2).build())
+                .genres(Set.of(Genre.builder().id(2).build()))
+                .build());
+        User user = userStorage.create(User.builder()
+                .login("login")
+                .name("name")
+                .email("some@email.com")
+                .birthday(LocalDate.now())
+                .build());
+        filmDbStorage.addLike(drama.getId(), user.getId());
+        commit();
+
+        Assertions.assertEquals(List.of(comedy.getId()), filmDbStorage.findTopPopularFilms(10, 1, null, null)
+                .stream().map(Film::getId).toList());
+        Assertions.assertEquals(List.of(drama.getId()), filmDbStorage.findTopPopularFilms(10, 2, 2, 2010)
+                .stream().map(Film::getId).toList());
+        Assertions.assertTrue(filmDbStorage.findTopPopularFilms(10, 2, 1, null).isEmpty());
+
+        filmDbStorage.update(Film.builder()
+                .id(comedy.getId())
+                .name("Comedy")
+                .description("Description")
+                .duration(100)
+                .releaseDate(LocalDate.of(2010, 01, 01))
+                .mpa(Rating.builder().id(1).build())
+                .genres(Set.of(Genre.builder().id(2).build()))
+                .build());
+        commit();
+        Assertions.assertEquals(List.of(drama.getId(), comedy.getId()),
+                filmDbStorage.findTopPopularFilmSummaries(10, 2, null, 2010).stream().map(Film::getId).toList());
+    }
+
+    @Test
+    public void testRolledBackLikeKeepsRanking() {
+        List<Integer> filmIds = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            filmIds.add(filmDbStorage.create(Film.builder()
+                    .name("Film " + i)
+                    .description("Description")
+                    .duration(100)
+                    .releaseDate(LocalDate.of(1901, 01, 01))
+                    .mpa(Rating.builder().id(1).build())
+                    .build()).getId());
+        }
+        User user = userStorage.create(User.builder()
+                .login("login")
+                .name("name")
+                .email("some@email.com")
+                .birthday(LocalDate.now())
+                .build());
+        commit();
+
+        filmDbStorage.addLike(filmIds.get(1), user.getId());
+        TestTransaction.end();
+        TestTransaction.start();
+
+        Assertions.assertEquals(filmIds, filmDbStorage.findTopPopularFilms(10, null, null, 1901).stream()
+                .map(Film::getId).toList());
+    }
+
+    @Test
+    public void testFindRecommendedFilms() {
+        List<Integer> filmIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            filmIds.add(filmDbStorage.create(Film.builder()
+                    .name("Film " + i)
+                    .description("Description")
+                    .duration(100)
+                    .releaseDate(LocalDate.of(2000, 01, 01))
+                    .mpa(Rating.builder().id(1).build())
+                    .build()).getId());
+        }
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            userIds.add(userStorage.create(User.builder()
+                    .login("login" + i)
+                    .name("name")
+                    .email("some@email.com")
+                    .birthday(LocalDate.now())
+                    .build()).getId());
+        }
+        filmDbStorage.addLike(filmIds.get(0), userIds.get(0));
+        filmDbStorage.addLike(filmIds.get(0), userIds.get(1));
+        filmDbStorage.addLike(filmIds.get(1), userIds.get(1));
+        filmDbStorage.addLike(filmIds.get(0), userIds.get(2));
+        filmDbStorage.addLike(filmIds.get(1), userIds.get(2));
+        filmDbStorage.addLike(filmIds.get(2), userIds.get(2));
+        filmDbStorage.addLike(filmIds.get(3), userIds.get(2));
+        commit();
+        Assertions.assertTrue(filmDbStorage.findRecommendedFilms(userIds.get(2), 10).isEmpty());
+
+        filmDbStorage.deleteLike(filmIds.get(3), userIds.get(2));
+        commit();
+        Assertions.assertEquals(List.of(filmIds.get(1), filmIds.get(2)),
+                filmDbStorage.findRecommendedFilms(userIds.get(0), 10).stream().map(Film::getId).toList());
+        Assertions.assertEquals(List.of(filmIds.get(2)),
+                filmDbStorage.findRecommendedFilmSummaries(userIds.get(1), 10).stream().map(Film::getId).toList());
+        Assertions.assertTrue(filmDbStorage.findRecommendedFilms(userIds.get(2), 10).isEmpty());
+    }
+
+    @Test
+    public void testGetFriendSuggestions() {
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            userIds.add(userStorage.create(User.builder()
+                    .login("login" + i)
+                    .name("name")
+                    .email("some@email.com")
+                    .birthday(LocalDate.now())
+                    .build()).getId());
+        }
+        userStorage.addFriend(userIds.get(0), userIds.get(1));
+        userStorage.addFriend(userIds.get(0), userIds.get(2));
+        userStorage.addFriend(userIds.get(1), userIds.get(0));
+        userStorage.addFriend(userIds.get(1), userIds.get(3));
+        userStorage.addFriend(userIds.get(2), userIds.get(3));
+        userStorage.addFriend(userIds.get(2), userIds.get(4));
+        commit();
+
+        List<User> suggestions = userStorage.getFriendSuggestions(userIds.get(0), 10);
+        Assertions.assertEquals(List.of(userIds.get(3), userIds.get(4)), suggestions.stream().map(User::getId).toList());
+        Assertions.assertEquals(List.of(2, 1), suggestions.stream().map(User::getMutualFriends).toList());
+
+        userStorage.addFriend(userIds.get(0), userIds.get(3));
+        userStorage.deleteFriend(userIds.get(2), userIds.get(4));
+        commit();
+        Assertions.assertTrue(userStorage.getFriendSuggestions(userIds.get(0), 10).isEmpty());
+        Assertions.assertEquals(List.of(userIds.get(2)), userStorage.getFriendSuggestions(userIds.get(1), 1).stream()
+                .map(User::getId).toList());
+    }
+}
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,7 +15,6 @@ import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
 
 
 public class FilmControllerTests {
@@ -22,10 +22,11 @@ public class FilmControllerTests {
 
     @BeforeEach
     void setUp() {
-        filmController = new FilmController(new FilmServiceImpl(new InMemoryFilmStorage(new HashMap<>()),
-                new InMemoryUserStorage(new HashMap<>()),
+        filmController = new FilmController(new FilmServiceImpl(
+                new InMemoryFilmStorage(new InMemoryGenreStorage(), new InMemoryRatingStorage()),
+                new InMemoryUserStorage(),
                 new InMemoryRatingStorage(),
-                new InMemoryGenreStorage()));
+                new InMemoryGenreStorage()), new ObjectMapper());
     }
 
     @Test
@@ -9,14 +9,13 @@ import ru.yandex.practicum.filmorate.service.UserServiceImpl;
 import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
 
 import java.time.LocalDate;
-import java.util.HashMap;
 
 public class UserControllerTests {
     UserController userController;
 
     @BeforeEach
     void setUp() {
-        userController = new UserController(new UserServiceImpl(new InMemoryUserStorage(new HashMap<>())));
+        userController = new UserController(new UserServiceImpl(new InMemoryUserStorage()));
     }
 
     @Test
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class QueryCountingDataSourceTests {
+    private final SingleConnectionDataSource target =
+            new SingleConnectionDataSource("jdbc:h2:mem:query-counting", "sa", "", true);
+    private final JdbcTemplate jdbc = new JdbcTemplate(new QueryCountingDataSource(target));
+
+    @AfterEach
+    void tearDown() {
+        JdbcQueryCounter.stop();
+        target.destroy();
+    }
+
+    @Test
+    public void countQueriesOfCurrentRequest() {
+        jdbc.queryForObject("SELECT 1", Integer.class);
+        AtomicInteger queries = JdbcQueryCounter.start();
+
+        jdbc.queryForObject("SELECT 1", Integer.class);
+        jdbc.update("CREATE TABLE IF NOT EXISTS t(id int)");
+        jdbc.batchUpdate("INSERT INTO t VALUES (1)", "INSERT INTO t VALUES (2)");
+
+        Assertions.assertEquals(3, queries.get());
+    }
+
+    @Test
+    public void countQueriesOfPropagatedTasksOnly() throws InterruptedException {
+        AtomicInteger queries = JdbcQueryCounter.start();
+
+        Thread.ofVirtual().start(() -> jdbc.queryForObject("SELECT 1", Integer.class)).join();
+        Thread.ofVirtual().start(JdbcQueryCounter.propagate(() -> jdbc.queryForObject("SELECT 1", Integer.class)))
+                .join();
+
+        Assertions.assertEquals(1, queries.get());
+    }
+}
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+public class SortedLongSetTests {
+
+    @Test
+    public void keepIdsSortedAndUnique() {
+        SortedLongSet ids = SortedLongSet.of(5, 1, 3, 1);
+        Assertions.assertTrue(ids.add(4L));
+        Assertions.assertFalse(ids.add(3L));
+        Assertions.assertTrue(ids.add(10L));
+        Assertions.assertTrue(ids.remove(1L));
+        Assertions.assertFalse(ids.remove(2L));
+
+        Assertions.assertArrayEquals(new long[]{3, 4, 5, 10}, ids.toLongArray());
+        Assertions.assertEquals(Set.of(3L, 4L, 5L, 10L), ids);
+        Assertions.assertTrue(ids.contains(4L));
+        Assertions.assertFalse(ids.contains((Object) 4));
+
+        Iterator<Long> iterator = ids.iterator();
+        iterator.next();
+        iterator.remove();
+        Assertions.assertEquals(List.of(4L, 5L, 10L), List.copyOf(ids));
+    }
+
+    @Test
+    public void serializeAsJsonArray() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        User user = User.builder().id(1).friends(SortedLongSet.of(3, 2)).build();
+
+        String json = objectMapper.writeValueAsString(user);
+        Assertions.assertTrue(json.contains("\"friends\":[2,3]"), json);
+
+        SortedLongSet parsed = objectMapper.readValue("[7,2,7]", SortedLongSet.class);
+        Assertions.assertArrayEquals(new long[]{2, 7}, parsed.toLongArray());
+    }
+}
@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ConcurrentChecksTests {
+
+    @Test
+    public void runChecksConcurrently() {
+        runTwoChecksConcurrently();
+    }
+
+    @Test
+    public void releaseOffloadPermitsAfterFailures() {
+        Runnable failure = () -> {
+            throw new NotFoundException("Пользователь с id = 1 не найден");
+        };
+        for (int i = 0; i < 20; i++) {
+            Assertions.assertThrows(NotFoundException.class, () -> ConcurrentChecks.runAll(failure, failure));
+        }
+
+        runTwoChecksConcurrently();
+    }
+
+    private static void runTwoChecksConcurrently() {
+        CountDownLatch started = new CountDownLatch(2);
+        Runnable check = () -> {
+            started.countDown();
+            try {
+                Assertions.assertTrue(started.await(5, TimeUnit.SECONDS), "Проверки должны выполняться одновременно");
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+
+        ConcurrentChecks.runAll(check, check);
+    }
+
+    @Test
+    public void throwFirstDeclaredFailure() {
+        Runnable slowFailure = () -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            throw new NotFoundException("Фильм с id = 1 не найден");
+        };
+        Runnable fastFailure = () -> {
+            throw new NotFoundException("Пользователь с id = 1 не найден");
+        };
+
+        NotFoundException e = Assertions.assertThrows(NotFoundException.class,
+                () -> ConcurrentChecks.runAll(slowFailure, fastFailure));
+        Assertions.assertEquals("Фильм с id = 1 не найден", e.getMessage());
+    }
+}
@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.LongStream;
+
+public class FriendGraphTests {
+
+    @Test
+    public void intersectListsOfSimilarSize() {
+        long[] first = {1, 3, 5, 7, 9};
+        long[] second = {2, 3, 4, 5, 10};
+
+        Assertions.assertArrayEquals(new long[]{3, 5}, FriendGraph.intersect(first, second));
+        Assertions.assertArrayEquals(new long[0], FriendGraph.intersect(first, new long[0]));
+    }
+
+    @Test
+    public void intersectShortListWithLongList() {
+        long[] shorter = {0, 500, 777, 998, 2000};
+        long[] longer = LongStream.range(0, 1000).filter(id -> id % 2 == 0).toArray();
+
+        Assertions.assertArrayEquals(new long[]{0, 500, 998}, FriendGraph.intersect(shorter, longer));
+        Assertions.assertArrayEquals(new long[]{0, 500, 998}, FriendGraph.intersect(longer, shorter));
+    }
+}
@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.config.CacheConfig;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.mappers.UserExtractor;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@TestPropertySource(properties = "filmorate.users.storage=graph")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ContextConfiguration(classes = {GraphUserStorage.class, UserDbStorage.class, UserRowMapper.class,
+        UserExtractor.class, CacheConfig.class, FriendGraph.class, SocialGraph.class})
+class GraphUserStorageTests {
+    private final UserStorage userStorage;
+    private final SocialGraph socialGraph;
+
+    @Test
+    public void testFriendsBeforeAndAfterMerge() {
+        Assertions.assertInstanceOf(GraphUserStorage.class, userStorage);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ids.add(userStorage.create(User.builder()
+                    .login("login" + i)
+                    .name("name")
+                    .email("some@email.com")
+                    .birthday(LocalDate.now())
+                    .build()).getId());
+        }
+        userStorage.addFriend(ids.get(0), ids.get(1));
+        userStorage.addFriend(ids.get(0), ids.get(2));
+        userStorage.addFriend(ids.get(3), ids.get(2));
+        assertFriends(ids);
+
+        socialGraph.merge();
+        assertFriends(ids);
+
+        userStorage.deleteFriend(ids.get(0), ids.get(1));
+        userStorage.addFriend(ids.get(0), ids.get(3));
+        Assertions.assertEquals(List.of(ids.get(2), ids.get(3)), userStorage.findUserById(ids.get(0)).orElseThrow()
+                .getFriends().stream().toList());
+        socialGraph.merge();
+        Assertions.assertEquals(List.of(ids.get(2), ids.get(3)),
+                userStorage.getFriendsByUserId(ids.get(0), 0, 10, false).stream().map(User::getId).toList());
+    }
+
+    private void assertFriends(List<Long> ids) {
+        Assertions.assertEquals(List.of(ids.get(1), ids.get(2)), userStorage.findUserById(ids.get(0)).orElseThrow()
+                .getFriends().stream().toList());
+        Assertions.assertEquals(List.of(ids.get(2)),
+                userStorage.getFriendsByUserId(ids.get(0), ids.get(1), 10, true).stream().map(User::getId).toList());
+        Assertions.assertEquals(List.of(ids.get(2)),
+                userStorage.getCommonFriends(ids.get(0), ids.get(3)).stream().map(User::getId).toList());
+        Assertions.assertTrue(userStorage.getFriendSuggestions(ids.get(3), 10).isEmpty());
+    }
+}
@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class InMemoryUserStorageTests {
+    private final InMemoryUserStorage storage = new InMemoryUserStorage();
+
+    @Test
+    public void addFriendsAndFindCommonFriends() {
+        long first = create("first").getId();
+        long second = create("second").getId();
+        long common = create("common").getId();
+        storage.addFriend(first, common);
+        storage.addFriend(first, second);
+        storage.addFriend(second, common);
+
+        Assertions.assertEquals(Set.of(second, common), storage.findUserById(first).orElseThrow().getFriends());
+        Assertions.assertTrue(storage.findUserById(common).orElseThrow().getFriends().isEmpty());
+        Assertions.assertEquals(List.of(common),
+                storage.getCommonFriends(first, second).stream().map(User::getId).toList());
+        Assertions.assertEquals(List.of(common),
+                storage.getFriendsByUserId(first, second, 10, false).stream().map(User::getId).toList());
+        Assertions.assertTrue(storage.deleteFriend(first, common));
+        Assertions.assertFalse(storage.deleteFriend(first, common));
+        Assertions.assertEquals(List.of(common),
+                storage.getFriendSuggestions(first, 10).stream().map(User::getId).toList());
+    }
+
+    @Test
+    public void returnCopiesAndConsistentSnapshots() {
+        User user = create("user");
+        User found = storage.findUserById(user.getId()).orElseThrow();
+        found.setName("changed");
+        found.getFriends().add(100L);
+
+        User stored = storage.findUserById(user.getId()).orElseThrow();
+        Assertions.assertEquals("user", stored.getName());
+        Assertions.assertTrue(stored.getFriends().isEmpty());
+        Assertions.assertEquals(List.of(user.getId()), storage.findAll().stream().map(User::getId).toList());
+    }
+
+    @Test
+    public void assignUniqueIdsConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Long>> ids = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String login = "user" + i;
+            ids.add(executor.submit(() -> create(login).getId()));
+        }
+        Set<Long> distinctIds = new HashSet<>();
+        for (Future<Long> id : ids) {
+            distinctIds.add(id.get());
+        }
+        executor.shutdown();
+
+        Assertions.assertEquals(1000, distinctIds.size());
+        Assertions.assertEquals(1000, storage.findAll().size());
+    }
+
+    private User create(String login) {
+        return storage.create(User.builder()
+                .email(login + "@mail.ru")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build());
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class LikeWriteBehindQueueTests {
+    private final List<List<LikeMutation>> batches = new ArrayList<>();
+    private final FilmLikesWriter writer = new FilmLikesWriter(null, null, null, null) {
+        @Override
+        public synchronized void apply(Collection<LikeMutation> mutations) {
+            batches.add(List.copyOf(mutations));
+        }
+    };
+
+    @Test
+    public void writeThroughWhenDisabled() {
+        LikeWriteBehindQueue queue = new LikeWriteBehindQueue(writer, false, 10, 10, 60_000);
+        queue.start();
+
+        queue.submit(new LikeMutation(1, 1L, true));
+
+        Assertions.assertEquals(List.of(List.of(new LikeMutation(1, 1L, true))), batches,
+                "В выключенном режиме лайк должен записываться сразу");
+    }
+
+    @Test
+    public void coalesceMutationsAndDrainOnStop() throws InterruptedException {
+        LikeWriteBehindQueue queue = new LikeWriteBehindQueue(writer, true, 10, 10, 60_000);
+        queue.start();
+
+        queue.submit(new LikeMutation(1, 1L, true));
+        queue.submit(new LikeMutation(1, 1L, false));
+        queue.submit(new LikeMutation(1, 2L, true));
+        queue.submit(new LikeMutation(1, 2L, true));
+        Assertions.assertTrue(batches.isEmpty(), "До сброса изменения не должны записываться");
+        Assertions.assertEquals(2, queue.stats().queueDepth());
+        queue.stop();
+
+        Assertions.assertEquals(List.of(List.of(new LikeMutation(1, 1L, false), new LikeMutation(1, 2L, true))),
+                batches, "Изменения одной пары (фильм, пользователь) должны схлопываться до последнего");
+        Assertions.assertEquals(0, queue.stats().queueDepth());
+        Assertions.assertEquals(2, queue.stats().flushedMutations());
+    }
+
+    @Test
+    public void flushWhenCapacityIsReached() throws InterruptedException {
+        LikeWriteBehindQueue queue = new LikeWriteBehindQueue(writer, true, 2, 2, 60_000);
+        queue.start();
+
+        for (long userId = 1; userId <= 5; userId++) {
+            queue.submit(new LikeMutation(1, userId, true));
+        }
+        queue.stop();
+
+        Assertions.assertEquals(5, batches.stream().mapToInt(List::size).sum());
+        Assertions.assertTrue(batches.stream().allMatch(batch -> batch.size() <= 2),
+                "Размер пакета не должен превышать batch-size");
+    }
+}
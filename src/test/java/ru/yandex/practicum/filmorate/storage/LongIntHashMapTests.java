@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LongIntHashMapTests {
+
+    @Test
+    public void putAndGetAcrossResizes() {
+        LongIntHashMap map = new LongIntHashMap(4);
+        for (int i = 0; i < 10_000; i++) {
+            map.put(i * 1_000_003L, i);
+        }
+        map.put(0, 42);
+
+        Assertions.assertEquals(10_000, map.size());
+        Assertions.assertEquals(42, map.get(0));
+        Assertions.assertEquals(9_999, map.get(9_999 * 1_000_003L));
+        Assertions.assertEquals(-1, map.get(1));
+    }
+}
@@ -0,0 +1,120 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public class StoreJournalTests {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void recoverUsersFromSnapshotAndJournalTail() throws IOException {
+        InMemoryUserStorage storage = userStorage();
+        long first = createUser(storage, "first").getId();
+        long second = createUser(storage, "second").getId();
+        storage.addFriend(first, second);
+        storage.snapshot();
+        long third = createUser(storage, "third").getId();
+        storage.addFriend(first, third);
+        storage.deleteFriend(first, second);
+        storage.update(User.builder().id(second).name("renamed").build());
+
+        Assertions.assertEquals(1, files("users", "snapshot-").size());
+        Assertions.assertEquals(1, files("users", "journal-").size());
+
+        InMemoryUserStorage recovered = userStorage();
+        Assertions.assertEquals(storage.findAll(), recovered.findAll());
+        Assertions.assertEquals(Set.of(third), recovered.findUserById(first).orElseThrow().getFriends());
+        Assertions.assertEquals("renamed", recovered.findUserById(second).orElseThrow().getName());
+        Assertions.assertEquals(third + 1, createUser(recovered, "fourth").getId());
+    }
+
+    @Test
+    public void recoverFilmsAndDropTornJournalTail() throws IOException {
+        InMemoryFilmStorage storage = filmStorage();
+        Film film = storage.create(Film.builder()
+                .name("name")
+                .description("description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(Rating.builder().id(3).build())
+                .genres(Set.of(Genre.builder().id(2).name("Драма").build()))
+                .build());
+        storage.addLike(film.getId(), 7L);
+        storage.addLike(film.getId(), 5L);
+        storage.deleteLike(film.getId(), 7L);
+        Film other = storage.create(film.toBuilder().name("other").userLikes(null).build());
+        storage.addLike(other.getId(), 5L);
+        storage.addLike(other.getId(), 6L);
+        Path journal = files("films", "journal-").getLast();
+        long journalSize = Files.size(journal);
+        Files.write(journal, new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        InMemoryFilmStorage recovered = filmStorage();
+        Film restored = recovered.findFilmById(film.getId()).orElseThrow();
+        Assertions.assertEquals(film.getName(), restored.getName());
+        Assertions.assertEquals("PG-13", restored.getMpa().getName());
+        Assertions.assertEquals(film.getGenres(), restored.getGenres());
+        Assertions.assertEquals(List.of(5L), List.copyOf(restored.getUserLikes()));
+        Assertions.assertEquals(List.of(other.getId(), film.getId()),
+                recovered.findTopPopularFilmSummaries(10, 2, 3, 2000).stream().map(Film::getId).toList());
+        Assertions.assertEquals(List.of(film.getId()),
+                recovered.findRecommendedFilms(6L, 10).stream().map(Film::getId).toList());
+        Assertions.assertEquals(journalSize, Files.size(journal));
+    }
+
+    @Test
+    public void keepUserUnchangedWhenJournalRejectsWrite() {
+        InMemoryUserStorage storage = userStorage();
+        long first = createUser(storage, "first").getId();
+        long second = createUser(storage, "second").getId();
+        storage.close();
+
+        Assertions.assertThrows(IllegalStateException.class, () -> storage.addFriend(first, second));
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> storage.update(User.builder().id(second).name("renamed").build()));
+        Assertions.assertTrue(storage.findUserById(first).orElseThrow().getFriends().isEmpty());
+        Assertions.assertEquals("second", storage.findUserById(second).orElseThrow().getName());
+    }
+
+    private InMemoryUserStorage userStorage() {
+        InMemoryUserStorage storage = new InMemoryUserStorage(new MemoryPersistence(directory.toString(), true, 0));
+        storage.recover();
+        return storage;
+    }
+
+    private InMemoryFilmStorage filmStorage() {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage(new InMemoryGenreStorage(),
+                new InMemoryRatingStorage(), new MemoryPersistence(directory.toString(), true, 0), 50);
+        storage.recover();
+        return storage;
+    }
+
+    private static User createUser(InMemoryUserStorage storage, String login) {
+        return storage.create(User.builder()
+                .email(login + "@mail.ru")
+                .login(login)
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build());
+    }
+
+    private List<Path> files(String store, String prefix) throws IOException {
+        try (Stream<Path> paths = Files.list(directory.resolve(store))) {
+            return paths.filter(path -> path.getFileName().toString().startsWith(prefix)).sorted().toList();
+        }
+    }
+}